@@ -0,0 +1,46 @@
+/*
+j8583 A Java implementation of the ISO8583 protocol
+Copyright (C) 2007 Enrique Zamudio Lopez
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+*/
+package com.solab.iso8583;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/** An OutputStream that puts everything it gets straight into a ByteBuffer,
+ * so that a message can be encoded without an intermediate copy. If the buffer
+ * runs out of space, a BufferOverflowException is thrown.
+ */
+final class ByteBufferOutputStream extends OutputStream {
+
+    private final ByteBuffer buf;
+
+    ByteBufferOutputStream(ByteBuffer buf) {
+        this.buf = buf;
+    }
+
+    @Override
+    public void write(int b) {
+        buf.put((byte)b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        buf.put(b, off, len);
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+j8583 A Java implementation of the ISO8583 protocol
+Copyright (C) 2007 Enrique Zamudio Lopez
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+*/
+package com.solab.iso8583;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+/** The bytes of an ISO header, encoded once and shared by all the messages created with it.
+ * A message only uses them while it still has the same header (the very same String or array)
+ * and, for text headers, the same character encoding.
+ */
+final class EncodedHeader {
+
+    private final Object source;
+    private final String encoding;
+    private final byte[] bytes;
+    private final ByteBuffer buffer;
+
+    private EncodedHeader(Object source, String encoding, byte[] bytes) {
+        this.source = source;
+        this.encoding = encoding;
+        this.bytes = bytes;
+        buffer = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    /** Encodes a text header. */
+    static EncodedHeader of(String header, String encoding) throws UnsupportedEncodingException {
+        return new EncodedHeader(header, encoding, header.getBytes(encoding));
+    }
+
+    /** Wraps a binary header, which is not copied. */
+    static EncodedHeader of(byte[] header) {
+        return new EncodedHeader(header, null, header);
+    }
+
+    /** Returns true if these are the bytes of the specified text header in the specified encoding. */
+    boolean isFor(String header, String encoding) {
+        return source == header && this.encoding != null && this.encoding.equals(encoding);
+    }
+
+    /** Returns true if these are the bytes of the specified binary header. */
+    boolean isFor(byte[] header) {
+        return source == header && encoding == null;
+    }
+
+    /** Returns the encoded header, which must not be modified. */
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    /** Returns a new read-only view of the header, with its own position and limit,
+     * without copying the bytes. */
+    ByteBuffer newBuffer() {
+        return buffer.duplicate();
+    }
+
+}
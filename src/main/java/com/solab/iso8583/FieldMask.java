@@ -0,0 +1,107 @@
+/*
+j8583 A Java implementation of the ISO8583 protocol
+Copyright (C) 2007 Enrique Zamudio Lopez
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+*/
+package com.solab.iso8583;
+
+import com.solab.iso8583.util.BitmapCodec;
+
+/** An immutable set of field numbers, used to parse only some of the fields of a message.
+ * It's stored the same way as the bitmap of a message, so it can be created once and shared
+ * between threads.
+ */
+public final class FieldMask {
+
+    private final long primary;
+    private final long secondary;
+    private final int lastField;
+
+    private FieldMask(long primary, long secondary) {
+        this.primary = primary;
+        this.secondary = secondary;
+        int last = 0;
+        for (int i = BitmapCodec.nextField(primary, secondary, 2); i > 0;
+                i = BitmapCodec.nextField(primary, secondary, i + 1)) {
+            last = i;
+        }
+        lastField = last;
+    }
+
+    /** Creates a mask with the specified fields, which must be between 2 and 128. */
+    public static FieldMask of(int... fields) {
+        long m1 = 0;
+        long m2 = 0;
+        for (int f : fields) {
+            if (f < 2 || f > 128) {
+                throw new IndexOutOfBoundsException("Field index must be between 2 and 128");
+            }
+            if (f <= 64) {
+                m1 |= BitmapCodec.bit(f);
+            } else {
+                m2 |= BitmapCodec.bit(f);
+            }
+        }
+        return new FieldMask(m1, m2);
+    }
+
+    /** Returns a mask with the fields of this one plus the specified fields. */
+    public FieldMask with(int... fields) {
+        final FieldMask other = of(fields);
+        return new FieldMask(primary | other.primary, secondary | other.secondary);
+    }
+
+    /** Returns true if the field is in the mask. */
+    public boolean contains(int field) {
+        if (field < 2 || field > 128) {
+            return false;
+        }
+        return ((field <= 64 ? primary : secondary) & BitmapCodec.bit(field)) != 0;
+    }
+
+    /** Returns the highest field number in the mask, or 0 if it's empty. */
+    public int getLastField() {
+        return lastField;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof FieldMask)) {
+            return false;
+        }
+        final FieldMask other = (FieldMask)obj;
+        return primary == other.primary && secondary == other.secondary;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(primary) * 31 + Long.hashCode(secondary);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("FieldMask[");
+        for (int i = BitmapCodec.nextField(primary, secondary, 2); i > 0;
+                i = BitmapCodec.nextField(primary, secondary, i + 1)) {
+            if (sb.length() > 10) {
+                sb.append(',');
+            }
+            sb.append(i);
+        }
+        return sb.append(']').toString();
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+j8583 A Java implementation of the ISO8583 protocol
+Copyright (C) 2007 Enrique Zamudio Lopez
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+*/
+package com.solab.iso8583;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/** Walks the frames in a region of a buffer, parsing each one into a ParseResult.
+ * It splits on frame boundaries: the prefix it splits off ends at the first frame boundary
+ * after the middle of the region, which is found by reading just the length headers.
+ * Frames are only read with absolute gets, so several spliterators can share the buffer.
+ */
+final class FrameSpliterator<T extends IsoMessage> implements Spliterator<ParseResult<T>> {
+
+    /** Regions smaller than this are not split. */
+    private static final int MIN_SPLIT = 16384;
+
+    private final IsoMessageReader<T> reader;
+    private final ByteBuffer frames;
+    private final int end;
+    private int pos;
+    /** A view of the buffer for bulk copies of frames, when it's not backed by an array. */
+    private ByteBuffer view;
+    private byte[] scratch;
+
+    FrameSpliterator(IsoMessageReader<T> reader, ByteBuffer frames, int start, int end) {
+        this.reader = reader;
+        this.frames = frames;
+        this.pos = start;
+        this.end = end;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super ParseResult<T>> action) {
+        if (pos >= end) {
+            return false;
+        }
+        final int lengthBytes = reader.getLengthBytes();
+        if (pos + lengthBytes > end) {
+            throw new UncheckedIOException(new IOException(String.format("Incomplete length header at %d", pos)));
+        }
+        final long flen = reader.decodeLength(frames, pos);
+        try {
+            if (flen < 0) {
+                throw new IOException(String.format("Invalid %s length header at %d",
+                        reader.getLengthEncoding(), pos));
+            }
+            reader.checkLength(flen);
+            if (pos + lengthBytes + flen > end) {
+                throw new IOException(String.format("Incomplete frame at %d", pos));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        final int start = pos + lengthBytes;
+        int len = (int)flen;
+        pos = start + len;
+        final int etx = reader.getEtx();
+        if (etx > -1) {
+            len--;
+            if ((frames.get(start + len) & 0xff) != etx) {
+                throw new UncheckedIOException(new IOException(String.format(
+                        "Expected ETX 0x%02x at end of frame at %d", etx, start - lengthBytes)));
+            }
+        }
+        final MessageFactory<T> factory = reader.getMessageFactory();
+        final ParseResult<T> result = new ParseResult<>();
+        if (frames.hasArray()) {
+            factory.tryParse(frames.array(), frames.arrayOffset() + start, len,
+                    reader.getIsoHeaderLength(), reader.isBinaryIsoHeader(), result);
+        } else {
+            final byte[] data;
+            if (factory.isBufferReferenced()) {
+                //Lazy messages, ByteStrings and echoed fields keep their buffer
+                data = new byte[len];
+            } else {
+                if (scratch == null || scratch.length < len) {
+                    scratch = new byte[Math.max(len, 1024)];
+                }
+                data = scratch;
+            }
+            if (view == null) {
+                view = frames.duplicate();
+            }
+            view.limit(start + len).position(start);
+            view.get(data, 0, len);
+            factory.tryParse(data, 0, len, reader.getIsoHeaderLength(), reader.isBinaryIsoHeader(), result);
+        }
+        action.accept(result);
+        return true;
+    }
+
+    @Override
+    public Spliterator<ParseResult<T>> trySplit() {
+        if (end - pos < MIN_SPLIT) {
+            return null;
+        }
+        final int lengthBytes = reader.getLengthBytes();
+        final int mid = pos + (end - pos) / 2;
+        int p = pos;
+        while (p < mid) {
+            if (p + lengthBytes > end) {
+                return null;
+            }
+            final long len = reader.decodeLength(frames, p);
+            if (len <= 0 || p + lengthBytes + len > end) {
+                //Let tryAdvance report it
+                return null;
+            }
+            p += lengthBytes + (int)len;
+        }
+        if (p >= end) {
+            return null;
+        }
+        final FrameSpliterator<T> prefix = new FrameSpliterator<>(reader, frames, pos, p);
+        pos = p;
+        return prefix;
+    }
+
+    /** Returns the number of bytes left, since the number of frames is not known. */
+    @Override
+    public long estimateSize() {
+        return end - pos;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+
+}
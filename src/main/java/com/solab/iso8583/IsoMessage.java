@@ -18,15 +18,31 @@ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
 */
 package com.solab.iso8583;
 
+import com.solab.iso8583.util.BitmapCodec;
+import com.solab.iso8583.util.DirectBufferPool;
+import com.solab.iso8583.util.EncodeBuffer;
+import com.solab.iso8583.util.EncodedLength;
 import com.solab.iso8583.util.HexCodec;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.BitSet;
+import java.util.Date;
 import java.util.Map;
 
 /** Represents an ISO8583 message. This is the core class of the framework.
@@ -40,7 +56,21 @@ import java.util.Map;
  */
 public class IsoMessage implements Serializable {
 
-	static final byte[] HEX = new byte[]{ '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F' };
+    /** Tells which classes override createBitmapBitSet(), so their bitmaps are written from it. */
+    private static final ClassValue<Boolean> CUSTOM_BITMAP = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> c) {
+            for (Class<?> k = c; k != IsoMessage.class && k != null; k = k.getSuperclass()) {
+                try {
+                    k.getDeclaredMethod("createBitmapBitSet");
+                    return true;
+                } catch (NoSuchMethodException ex) {
+                    //keep looking in the superclass
+                }
+            }
+            return false;
+        }
+    };
 
 	/** The message type. */
     private int type;
@@ -58,6 +88,16 @@ public class IsoMessage implements Serializable {
     private boolean binBitmap;
     private boolean forceStringEncoding;
     private String encoding = System.getProperty("file.encoding");
+    /** The fields that haven't been decoded yet, when the message was parsed lazily. */
+    private transient RawFields raw;
+    /** The original bytes of the parsed fields that haven't been replaced, to echo them in responses. */
+    private transient RawFields original;
+    /** The fields present in the message (2 to 64 and 65 to 128), kept up to date as they're set
+     * and removed; the bit for field 1 is only set when writing the message. */
+    private transient long bitmap1;
+    private transient long bitmap2;
+    /** The ISO header as it was encoded by the factory, shared with other messages. */
+    private transient EncodedHeader encodedHeader;
 
     /** Creates a new empty message with no values set. */
     public IsoMessage() {
@@ -114,6 +154,9 @@ public class IsoMessage implements Serializable {
     public void setForceStringEncoding(boolean flag) {
         forceStringEncoding = flag;
     }
+    public boolean isForceStringEncoding() {
+        return forceStringEncoding;
+    }
 
     /** Sets the string to be sent as ISO header, that is, after the length header but before the message type.
      * This is useful in case an application needs some custom data in the ISO header of each message (very rare). */
@@ -169,17 +212,134 @@ public class IsoMessage implements Serializable {
      * @param field The field number. 1 is the secondary bitmap and is not returned as such;
      * real fields go from 2 to 128. */
     public <T> T getObjectValue(int field) {
-    	@SuppressWarnings("unchecked")
-    	IsoValue<T> v = fields[field];
+    	IsoValue<T> v = getField(field);
     	return v == null ? null : v.getValue();
     }
 
-    /** Returns the IsoValue for the specified field. First real field is 2. */
+    /** Returns the value of a numeric field as a long, without creating any objects if the
+     * field holds a LongValue. For AMOUNT fields this is the amount in minor units, the same as
+     * getAmountMinorUnits(). Other values are converted from their number or formatted digits.
+     * @throws IllegalArgumentException if the field is not set or doesn't contain a number. */
+    public long getLong(int field) {
+    	final IsoValue<?> v = getField(field);
+    	if (v instanceof LongValue) {
+    		return ((LongValue)v).getLong();
+    	} else if (v == null) {
+    		throw new IllegalArgumentException(String.format("Field %d is not set", field));
+    	} else if (v.getType() == IsoType.AMOUNT) {
+    		return getAmountMinorUnits(field);
+    	}
+    	final Object o = v.getValue();
+    	if (o instanceof BigInteger) {
+    		return ((BigInteger)o).longValueExact();
+    	} else if (o instanceof BigDecimal) {
+    		return ((BigDecimal)o).longValueExact();
+    	} else if (o instanceof Number) {
+    		return ((Number)o).longValue();
+    	}
+    	return Long.parseLong(v.toString());
+    }
+
+    /** Returns the amount in an AMOUNT field in minor units, that is, the 12 digits of the field
+     * as a long: 10.00 is 1000. No objects are created if the field holds a LongValue.
+     * @throws IllegalArgumentException if the field is not set or is not an AMOUNT. */
+    public long getAmountMinorUnits(int field) {
+    	final IsoValue<?> v = getField(field);
+    	if (v == null) {
+    		throw new IllegalArgumentException(String.format("Field %d is not set", field));
+    	} else if (v.getType() != IsoType.AMOUNT) {
+    		throw new IllegalArgumentException(String.format("Field %d is %s, not AMOUNT", field, v.getType()));
+    	} else if (v instanceof LongValue) {
+    		return ((LongValue)v).getLong();
+    	}
+    	final Object o = v.getValue();
+    	if (o instanceof BigDecimal) {
+    		return ((BigDecimal)o).movePointRight(2).longValue();
+    	}
+    	return Long.parseLong(v.toString());
+    }
+
+    /** Returns the value of a date field as an Instant, or null if the field is not set.
+     * A LocalDateTime value is taken to be in the field's timezone, or the default one.
+     * @throws IllegalArgumentException if the field doesn't contain a date. */
+    public Instant getInstant(int field) {
+    	final IsoValue<?> v = getField(field);
+    	final Object o = v == null ? null : v.getValue();
+    	if (o == null) {
+    		return null;
+    	} else if (o instanceof Date) {
+    		return ((Date)o).toInstant();
+    	} else if (o instanceof Instant) {
+    		return (Instant)o;
+    	} else if (o instanceof LocalDateTime) {
+    		return ((LocalDateTime)o).atZone(zoneOf(v)).toInstant();
+    	}
+    	throw new IllegalArgumentException(String.format("Field %d does not contain a date", field));
+    }
+
+    /** Returns the value of a date field as a LocalDateTime in the field's timezone, or the
+     * default one, or null if the field is not set.
+     * @throws IllegalArgumentException if the field doesn't contain a date. */
+    public LocalDateTime getLocalDateTime(int field) {
+    	final IsoValue<?> v = getField(field);
+    	final Object o = v == null ? null : v.getValue();
+    	if (o instanceof LocalDateTime) {
+    		return (LocalDateTime)o;
+    	}
+    	final Instant i = getInstant(field);
+    	return i == null ? null : LocalDateTime.ofInstant(i, zoneOf(v));
+    }
+
+    private static ZoneId zoneOf(IsoValue<?> v) {
+    	return v.getTimeZone() == null ? ZoneId.systemDefault() : v.getTimeZone().toZoneId();
+    }
+
+    /** Returns the IsoValue for the specified field. First real field is 2.
+     * If the message was parsed lazily, the field is decoded the first time it's requested;
+     * an IllegalStateException is thrown if the field's data turns out to be invalid. */
 	@SuppressWarnings("unchecked")
     public <T> IsoValue<T> getField(int field) {
+        if (fields[field] == null && raw != null && raw.has(field)) {
+            try {
+                fields[field] = raw.decode(field);
+            } catch (ParseException | UnsupportedEncodingException ex) {
+                throw new IllegalStateException(String.format("Cannot decode field %d", field), ex);
+            }
+            if (fields[field] != null) {
+                //The same as setField does for the values of messages parsed eagerly
+                fields[field].setCharacterEncoding(encoding);
+            }
+            raw.remove(field);
+            if (raw.isEmpty()) {
+                raw = null;
+            }
+        }
     	return fields[field];
     }
 
+    /** Sets the fields that will be decoded the first time they're requested. */
+    void setRawFields(RawFields value) {
+        raw = value;
+        bitmap1 |= value.getPrimaryBitmap();
+        bitmap2 |= value.getSecondaryBitmap();
+    }
+
+    /** Sets the location of the parsed fields in the original buffer. */
+    void setOriginalFields(RawFields value) {
+        original = value;
+    }
+
+    /** Returns the location of the parsed fields that haven't been replaced since the message
+     * was parsed, or null if the factory didn't keep them. */
+    RawFields getOriginalFields() {
+        return original;
+    }
+
+    /** Returns true if the message has fields that haven't been decoded yet. */
+    public boolean hasUndecodedFields() {
+        return raw != null;
+    }
+
     /** Stored the field in the specified index. The first field is the secondary bitmap and has index 1,
      * so the first valid value for index must be 2.
      * @return The receiver (useful for setting several fields in sequence). */
@@ -192,9 +352,19 @@ public class IsoMessage implements Serializable {
             if (fields[index] != null) {
                 field.setBinaryLengthIfNotSet(fields[index].getBinaryLength());
                 field.setBinaryValueIfNotSet(fields[index].getBinaryValue());
+            } else if (raw != null && raw.has(index)) {
+                field.setBinaryLengthIfNotSet(raw.getBinaryLength(index));
+                field.setBinaryValueIfNotSet(raw.getBinaryValue(index));
             }
     	}
     	fields[index] = field;
+        if (raw != null) {
+            raw.remove(index);
+        }
+        if (original != null) {
+            original.remove(index);
+        }
+        updateBitmap(index, field != null);
     	return this;
     }
 
@@ -231,6 +401,13 @@ public class IsoMessage implements Serializable {
     	}
     	if (value == null) {
     		fields[index] = null;
+            if (raw != null) {
+                raw.remove(index);
+            }
+            if (original != null) {
+                original.remove(index);
+            }
+            updateBitmap(index, false);
     	} else {
     		IsoValue<T> v = null;
     		if (t.needsLength()) {
@@ -242,12 +419,36 @@ public class IsoMessage implements Serializable {
     		if (fields[index] != null) {
     		    v.setBinaryLength(fields[index].getBinaryLength());
                 v.setBinaryValue(fields[index].getBinaryValue());
+            } else if (raw != null && raw.has(index)) {
+                v.setBinaryLength(raw.getBinaryLength(index));
+                v.setBinaryValue(raw.getBinaryValue(index));
+                raw.remove(index);
+            }
+            if (original != null) {
+                original.remove(index);
             }
     		fields[index] = v;
+            updateBitmap(index, true);
     	}
     	return this;
     }
 
+    /** Sets or clears the bit for the field in the bitmap. */
+    private void updateBitmap(int index, boolean present) {
+        final long bit = BitmapCodec.bit(index);
+        if (index <= 64) {
+            bitmap1 = present ? bitmap1 | bit : bitmap1 & ~bit;
+        } else {
+            bitmap2 = present ? bitmap2 | bit : bitmap2 & ~bit;
+        }
+    }
+
+    /** Returns the first field from the specified one onwards that has a value, or -1 if there
+     * are no more fields. */
+    int nextField(int from) {
+        return BitmapCodec.nextField(bitmap1, bitmap2, from < 2 ? 2 : from);
+    }
+
     /** A convenience method to set new values in fields that already contain values.
      * The field's type, length and custom encoder are taken from the current value.
      * This method can only be used with fields that have been previously set,
@@ -274,14 +475,14 @@ public class IsoMessage implements Serializable {
      * @param idx The field number. */
     @SuppressFBWarnings
     public boolean hasField(int idx) {
-    	return fields[idx] != null;
+    	return idx > 1 && idx <= 128 && ((idx <= 64 ? bitmap1 : bitmap2) & BitmapCodec.bit(idx)) != 0;
     }
 
     /** Writes a message to a stream, after writing the specified number of bytes indicating
-     * the message's length. The message will first be written to an internal memory stream
-     * which will then be dumped into the specified stream. This method flushes the stream
-     * after the write. There are at most three write operations to the stream: one for the
-     * length header, one for the message, and the last one with for the ETX.
+     * the message's length. The length header, message and ETX are first encoded into
+     * a reusable buffer, which is then written to the stream in a single write operation.
+     * This method flushes the stream after the write; use {@link IsoMessageWriter} to
+     * write several messages before flushing.
      * @param outs The stream to write the message to.
      * @param lengthBytes The size of the message length header. Valid ranges are 0 to 4.
      * @throws IllegalArgumentException if the specified length header is more than 4 bytes.
@@ -290,182 +491,387 @@ public class IsoMessage implements Serializable {
     	if (lengthBytes > 4) {
     		throw new IllegalArgumentException("The length header can have at most 4 bytes");
     	}
-    	byte[] data = writeData();
-
-    	if (lengthBytes > 0) {
-    		int l = data.length;
-    		if (etx > -1) {
-    			l++;
-    		}
-    		byte[] buf = new byte[lengthBytes];
-    		int pos = 0;
-    		if (lengthBytes == 4) {
-    			buf[0] = (byte)((l & 0xff000000) >> 24);
-    			pos++;
-    		}
-    		if (lengthBytes > 2) {
-    			buf[pos] = (byte)((l & 0xff0000) >> 16);
-    			pos++;
-    		}
-    		if (lengthBytes > 1) {
-    			buf[pos] = (byte)((l & 0xff00) >> 8);
-    			pos++;
-    		}
-    		buf[pos] = (byte)(l & 0xff);
-    		outs.write(buf);
-    	}
-    	outs.write(data);
-    	//ETX
-    	if (etx > -1) {
-    		outs.write(etx);
+    	final EncodeBuffer buf = EncodeBuffer.acquire();
+    	try {
+    		writeTo(buf, Math.max(lengthBytes, 0));
+    		buf.writeTo(outs);
+    	} finally {
+    		buf.release();
     	}
     	outs.flush();
     }
 
     /** Creates and returns a ByteBuffer with the data of the message, including the length header.
-     * The returned buffer is already flipped, so it is ready to be written to a Channel. */
-    @SuppressFBWarnings
+     * The returned buffer is already flipped, so it is ready to be written to a Channel.
+     * The buffer is allocated with the exact size of the message and the message is
+     * encoded directly into it. */
     public ByteBuffer writeToBuffer(int lengthBytes) {
     	if (lengthBytes > 4) {
     		throw new IllegalArgumentException("The length header can have at most 4 bytes");
     	}
+    	ByteBuffer buf = ByteBuffer.allocate(encodedLength(lengthBytes));
+    	writeTo(buf, lengthBytes);
+    	buf.flip();
+    	return buf;
+    }
 
-    	byte[] data = writeData();
-    	ByteBuffer buf = ByteBuffer.allocate(lengthBytes + data.length + (etx > -1 ? 1 : 0));
-    	if (lengthBytes > 0) {
-    		int l = data.length;
-    		if (etx > -1) {
-    			l++;
-    		}
-    		if (lengthBytes == 4) {
-                buf.put((byte)((l & 0xff000000) >> 24));
-    		}
-    		if (lengthBytes > 2) {
-                buf.put((byte)((l & 0xff0000) >> 16));
-    		}
-    		if (lengthBytes > 1) {
-                buf.put((byte)((l & 0xff00) >> 8));
-    		}
-            buf.put((byte)(l & 0xff));
+    /** Encodes the message into a direct buffer from the pool, so that it can be written to a
+     * channel without the copy that the JDK makes of heap buffers. The returned buffer is already
+     * flipped; it must be given back to the pool with release() after it's been written.
+     * @param pool The pool to take the buffer from.
+     * @param lengthBytes The size of the message length header. Valid ranges are 0 to 4. */
+    public ByteBuffer writeToBuffer(DirectBufferPool pool, int lengthBytes) {
+    	if (lengthBytes < 0 || lengthBytes > 4) {
+    		throw new IllegalArgumentException("The length header can have at most 4 bytes");
     	}
-    	buf.put(data);
-    	//ETX
-    	if (etx > -1) {
-    		buf.put((byte)etx);
+    	final ByteBuffer buf = pool.acquire(encodedLength(lengthBytes));
+    	try {
+    		writeTo(buf, lengthBytes);
+    	} catch (RuntimeException ex) {
+    		pool.release(buf);
+    		throw ex;
     	}
     	buf.flip();
     	return buf;
     }
 
-    /** Creates a BitSet for the bitmap. */
-    protected BitSet createBitmapBitSet() {
-        BitSet bs = new BitSet(forceb2 ? 128 : 64);
-        for (int i = 2 ; i < 129; i++) {
-            if (fields[i] != null) {
-                bs.set(i - 1);
+    /** Returns the exact number of bytes of the encoded message: the ISO header, type, bitmap,
+     * fields (with their length headers) and the ETX if it's set. This is the value written in
+     * the length header, and it's computed without encoding the message. */
+    public int encodedLength() {
+    	int size = encodedContentLength();
+    	if (encodedHeader != null && isEncodedHeaderValid()) {
+    		size += encodedHeader.getBytes().length;
+    	} else if (isoHeader != null) {
+    		size += EncodedLength.of(isoHeader, encoding);
+    	} else if (binIsoHeader != null) {
+    		size += binIsoHeader.length;
+    	}
+    	return etx > -1 ? size + 1 : size;
+    }
+
+    /** Returns the number of bytes of the type, bitmap and fields. */
+    private int encodedContentLength() {
+    	int size = binary ? 2 : EncodedLength.ascii(Math.max(4, Integer.toHexString(type).length()), encoding);
+    	final boolean secondary = forceb2 || bitmap2 != 0;
+    	final int bitmap;
+    	if (CUSTOM_BITMAP.get(getClass())) {
+    		bitmap = encodeBitmap(binary || binBitmap).length;
+    	} else if (binary || binBitmap) {
+    		bitmap = secondary ? 16 : 8;
+    	} else {
+    		bitmap = secondary ? 32 : 16;
+    	}
+    	if (binary || binBitmap || !forceStringEncoding) {
+    		size += bitmap;
+    	} else {
+    		size += EncodedLength.ascii(bitmap, encoding);
+    	}
+        final boolean copyRaw = raw != null && raw.canCopy(binary, forceStringEncoding, encoding);
+    	for (int i = nextField(2); i > 0; i = nextField(i + 1)) {
+    		IsoValue<?> v = fields[i];
+    		if (v == null && raw != null && raw.has(i)) {
+                if (copyRaw) {
+                    size += raw.length(i);
+                    continue;
+                }
+                v = getField(i);
             }
+    		if (v != null) {
+    			size += v.encodedLength(binary, forceStringEncoding);
+    		}
+    	}
+    	return size;
+    }
+
+    /** Returns the exact number of bytes written by writeTo with the specified length header,
+     * that is, encodedLength() plus the size of the length header. */
+    public int encodedLength(int lengthBytes) {
+    	return lengthBytes + encodedLength();
+    }
+
+    /** Creates a BitSet for the bitmap. The message is written with the bitmap words it keeps,
+     * unless a subclass overrides this method; in that case the bitmap is written from the
+     * BitSet it returns, with as many bits as its size(). */
+    protected BitSet createBitmapBitSet() {
+        final boolean secondary = forceb2 || bitmap2 != 0;
+        BitSet bs = new BitSet(secondary ? 128 : 64);
+        for (int i = nextField(2); i > 0; i = nextField(i + 1)) {
+            bs.set(i - 1);
         }
-        if (forceb2) {
-            bs.set(0);
-        } else if (bs.length() > 64) {
-            //Extend to 128 if needed
-            BitSet b2 = new BitSet(128);
-            b2.or(bs);
-            bs = b2;
+        if (secondary) {
             bs.set(0);
         }
         return bs;
     }
 
+    /** Encodes the bitmap, including the secondary bitmap if it's needed. */
+    private byte[] encodeBitmap(boolean binaryBitmap) {
+        if (CUSTOM_BITMAP.get(getClass())) {
+            return encodeBitmap(createBitmapBitSet(), binaryBitmap);
+        }
+        final boolean secondary = forceb2 || bitmap2 != 0;
+        final long primary = secondary ? bitmap1 | Long.MIN_VALUE : bitmap1;
+        final byte[] buf;
+        if (binaryBitmap) {
+            buf = new byte[secondary ? 16 : 8];
+            BitmapCodec.encodeBinary(primary, buf, 0);
+            if (secondary) {
+                BitmapCodec.encodeBinary(bitmap2, buf, 8);
+            }
+        } else {
+            buf = new byte[secondary ? 32 : 16];
+            BitmapCodec.encodeHex(primary, buf, 0);
+            if (secondary) {
+                BitmapCodec.encodeHex(bitmap2, buf, 16);
+            }
+        }
+        return buf;
+    }
+
+    /** Encodes the bitmap from a subclass's createBitmapBitSet(). */
+    private static byte[] encodeBitmap(BitSet bs, boolean binaryBitmap) {
+        final byte[] buf;
+        if (binaryBitmap) {
+            buf = new byte[bs.size() / 8];
+            for (int i = bs.nextSetBit(0); i >= 0 && i < buf.length * 8; i = bs.nextSetBit(i + 1)) {
+                buf[i >> 3] |= 0x80 >>> (i & 7);
+            }
+        } else {
+            buf = new byte[bs.size() / 4];
+            for (int i = 0; i < buf.length; i++) {
+                final int pos = i * 4;
+                final int nibble = (bs.get(pos) ? 8 : 0) | (bs.get(pos + 1) ? 4 : 0)
+                        | (bs.get(pos + 2) ? 2 : 0) | (bs.get(pos + 3) ? 1 : 0);
+                buf[i] = (byte)"0123456789ABCDEF".charAt(nibble);
+            }
+        }
+        return buf;
+    }
+
     /** Writes the message to a memory stream and returns a byte array with the result. */
-    @SuppressFBWarnings
     public byte[] writeData() {
-    	ByteArrayOutputStream bout = new ByteArrayOutputStream();
-    	if (isoHeader != null) {
-    		try {
-    			bout.write(isoHeader.getBytes(encoding));
-    		} catch (IOException ex) {
-    			//should never happen, writing to a ByteArrayOutputStream
-    		}
+    	final EncodeBuffer bout = EncodeBuffer.acquire();
+    	try {
+    		writeBody(bout);
+    		return bout.toByteArray();
+    	} catch (IOException ex) {
+    		//should never happen, writing to memory
+    		return bout.toByteArray();
+    	} finally {
+    		bout.release();
+    	}
+    }
+
+    /** Encodes the message at the end of the buffer, which grows as needed: first the length
+     * header, then the message, then the ETX if it's set. The buffer can be reused for many
+     * messages, for example one per connection, to avoid allocating memory for each one.
+     * If the message can't be encoded, nothing is left in the buffer.
+     * @param out The buffer to write to.
+     * @param lengthBytes The size of the message length header. Valid ranges are 0 to 4.
+     * @return The number of bytes written. */
+    public int writeTo(EncodeBuffer out, int lengthBytes) {
+    	if (lengthBytes < 0 || lengthBytes > 4) {
+    		throw new IllegalArgumentException("The length header can have at most 4 bytes");
+    	}
+    	final int start = out.size();
+    	for (int i = 0; i < lengthBytes; i++) {
+    		out.write(0);
+    	}
+    	try {
+    		writeBody(out);
+    	} catch (IOException ex) {
+    		out.truncate(start);
+    		throw new IllegalStateException("Cannot encode message", ex);
+    	} catch (RuntimeException ex) {
+    		//Don't leave a partial frame in the buffer
+    		out.truncate(start);
+    		throw ex;
+    	}
+    	if (etx > -1) {
+    		out.write(etx);
+    	}
+    	final int written = out.size() - start;
+    	int l = written - lengthBytes;
+    	for (int i = start + lengthBytes - 1; i >= start; i--) {
+    		out.set(i, l & 0xff);
+    		l >>= 8;
+    	}
+    	return written;
+    }
+
+    /** Writes the ISO header, type, bitmap and fields of the message to the stream. */
+    @SuppressFBWarnings
+    private void writeBody(OutputStream bout) throws IOException {
+    	if (encodedHeader != null && isEncodedHeaderValid()) {
+    		bout.write(encodedHeader.getBytes());
+    	} else if (isoHeader != null) {
+    		bout.write(isoHeader.getBytes(encoding));
     	} else if (binIsoHeader != null) {
-            try {
-                bout.write(binIsoHeader);
-            } catch (IOException ex) {
-                //should never happen, writing to a ByteArrayOutputStream
-            }
+            bout.write(binIsoHeader);
         }
+    	writeContent(bout);
+    }
+
+    /** Writes the type, bitmap and fields of the message to the stream. */
+    @SuppressFBWarnings
+    private void writeContent(OutputStream bout) throws IOException {
     	//Message Type
     	if (binary) {
         	bout.write((type & 0xff00) >> 8);
         	bout.write(type & 0xff);
     	} else {
-    		try {
-    			bout.write(String.format("%04x", type).getBytes(encoding));
-    		} catch (IOException ex) {
-    			//should never happen, writing to a ByteArrayOutputStream
-    		}
+    		bout.write(String.format("%04x", type).getBytes(encoding));
     	}
 
     	//Bitmap
-        BitSet bs = createBitmapBitSet();
-    	//Write bitmap to stream
-    	if (binary || binBitmap) {
-    		int pos = 128;
-    		int b = 0;
-    		for (int i = 0; i < bs.size(); i++) {
-    			if (bs.get(i)) {
-    				b |= pos;
-    			}
-    			pos >>= 1;
-    			if (pos == 0) {
-    				bout.write(b);
-    				pos = 128;
-    				b = 0;
-    			}
-    		}
-    	} else {
-            ByteArrayOutputStream bout2 = null;
-            if (forceStringEncoding) {
-                bout2 = bout;
-                bout = new ByteArrayOutputStream();
-            }
-            int pos = 0;
-            int lim = bs.size() / 4;
-            for (int i = 0; i < lim; i++) {
-                int nibble = 0;
-                if (bs.get(pos++))
-                    nibble |= 8;
-                if (bs.get(pos++))
-                    nibble |= 4;
-                if (bs.get(pos++))
-                    nibble |= 2;
-                if (bs.get(pos++))
-                    nibble |= 1;
-                bout.write(HEX[nibble]);
-            }
-            if (forceStringEncoding) {
-                final String _hb = new String(bout.toByteArray());
-                bout = bout2;
-                try {
-                    bout.write(_hb.getBytes(encoding));
-                } catch (IOException ignore) {
-                    //never happen
-                }
-            }
-    	}
+        final byte[] bitmap = encodeBitmap(binary || binBitmap);
+        if (forceStringEncoding && !(binary || binBitmap)) {
+            bout.write(new String(bitmap, StandardCharsets.US_ASCII).getBytes(encoding));
+        } else {
+            bout.write(bitmap, 0, bitmap.length);
+        }
 
     	//Fields
-    	for (int i = 2; i < 129; i++) {
+        final boolean copyRaw = raw != null && raw.canCopy(binary, forceStringEncoding, encoding);
+    	for (int i = nextField(2); i > 0; i = nextField(i + 1)) {
     		IsoValue<?> v = fields[i];
+    		if (v == null && raw != null && raw.has(i)) {
+                if (copyRaw) {
+                    raw.write(i, bout);
+                    continue;
+                }
+                v = getField(i);
+            }
     		if (v != null) {
-        		try {
-        			v.write(bout, binary, forceStringEncoding);
-        		} catch (IOException ex) {
-        			//should never happen, writing to a ByteArrayOutputStream
-        		}
+        		v.write(bout, binary, forceStringEncoding);
+    		}
+    	}
+    }
+
+    /** Sets the ISO header as it was already encoded by the factory. It's only used as long as
+     * the message keeps the same header and encoding. */
+    void setEncodedHeader(EncodedHeader value) {
+        encodedHeader = value;
+    }
+
+    private boolean isEncodedHeaderValid() {
+        return isoHeader == null ? encodedHeader.isFor(binIsoHeader) : encodedHeader.isFor(isoHeader, encoding);
+    }
+
+    /** Encodes the message as separate buffers, ready for a gathering write: the length header
+     * (if lengthBytes is more than 0), the ISO header (if there is one) and the rest of the message,
+     * including the ETX if it's set. The ISO header created by the factory is a read-only view
+     * of bytes that are shared by all the messages of the same type, so it's never copied;
+     * the rest of the message is encoded once into a buffer of the exact size.
+     * @param lengthBytes The size of the message length header. Valid ranges are 0 to 4. */
+    public ByteBuffer[] toBuffers(int lengthBytes) {
+    	if (lengthBytes < 0 || lengthBytes > 4) {
+    		throw new IllegalArgumentException("The length header can have at most 4 bytes");
+    	}
+    	ByteBuffer header = null;
+    	if (encodedHeader != null && isEncodedHeaderValid()) {
+    		header = encodedHeader.newBuffer();
+    	} else if (isoHeader != null) {
+    		try {
+    			header = ByteBuffer.wrap(isoHeader.getBytes(encoding));
+    		} catch (UnsupportedEncodingException ex) {
+    			throw new IllegalStateException("Cannot encode message", ex);
+    		}
+    	} else if (binIsoHeader != null) {
+    		header = ByteBuffer.wrap(binIsoHeader).asReadOnlyBuffer();
+    	}
+    	final ByteBuffer body = ByteBuffer.allocate(encodedContentLength() + (etx > -1 ? 1 : 0));
+    	try {
+    		writeContent(new ByteBufferOutputStream(body));
+    	} catch (IOException ex) {
+    		throw new IllegalStateException("Cannot encode message", ex);
+    	}
+    	if (etx > -1) {
+    		body.put((byte)etx);
+    	}
+    	body.flip();
+    	final int count = (lengthBytes > 0 ? 1 : 0) + (header != null ? 1 : 0) + 1;
+    	final ByteBuffer[] bufs = new ByteBuffer[count];
+    	int i = 0;
+    	if (lengthBytes > 0) {
+    		int l = body.remaining() + (header == null ? 0 : header.remaining());
+    		final byte[] lhead = new byte[lengthBytes];
+    		for (int pos = lengthBytes - 1; pos >= 0; pos--) {
+    			lhead[pos] = (byte)(l & 0xff);
+    			l >>= 8;
+    		}
+    		bufs[i++] = ByteBuffer.wrap(lhead);
+    	}
+    	if (header != null) {
+    		bufs[i++] = header;
+    	}
+    	bufs[i] = body;
+    	return bufs;
+    }
+
+    /** Writes the message to the channel in a single gathering write (or more, if the channel
+     * doesn't take everything at once), using the buffers from toBuffers(lengthBytes).
+     * This method doesn't return until the whole message has been written, so non-blocking
+     * channels should rather use toBuffers and handle partial writes themselves.
+     * @param lengthBytes The size of the message length header. Valid ranges are 0 to 4.
+     * @return The number of bytes written. */
+    public long write(GatheringByteChannel channel, int lengthBytes) throws IOException {
+    	final ByteBuffer[] bufs = toBuffers(lengthBytes);
+    	final ByteBuffer last = bufs[bufs.length - 1];
+    	long written = 0;
+    	while (last.hasRemaining()) {
+    		written += channel.write(bufs);
+    	}
+    	return written;
+    }
+
+    /** Encodes the message into the destination buffer, starting at its position: first the
+     * length header, then the message, then the ETX if it's set. The data is written in one
+     * pass, without intermediate copies; the length header is filled in at the end.
+     * @param dst The buffer to write to. Its position is moved past the message.
+     * @param lengthBytes The size of the message length header. Valid ranges are 0 to 4.
+     * @return The number of bytes written.
+     * @throws BufferOverflowException if the message doesn't fit in the remaining space of the
+     * buffer. If the message can't be encoded, for this or any other reason, the buffer's
+     * position is not modified, but its contents might be. */
+    public int writeTo(ByteBuffer dst, int lengthBytes) {
+    	if (lengthBytes < 0 || lengthBytes > 4) {
+    		throw new IllegalArgumentException("The length header can have at most 4 bytes");
+    	}
+    	final int start = dst.position();
+    	if (dst.remaining() < lengthBytes) {
+    		throw new BufferOverflowException();
+    	}
+    	try {
+    		dst.position(start + lengthBytes);
+    		writeBody(new ByteBufferOutputStream(dst));
+    		if (etx > -1) {
+    			dst.put((byte)etx);
     		}
+    	} catch (RuntimeException ex) {
+    		dst.position(start);
+    		throw ex;
+    	} catch (IOException ex) {
+    		dst.position(start);
+    		throw new IllegalStateException("Cannot encode message", ex);
+    	}
+    	final int written = dst.position() - start;
+    	int l = written - lengthBytes;
+    	for (int i = start + lengthBytes - 1; i >= start; i--) {
+    		dst.put(i, (byte)(l & 0xff));
+    		l >>= 8;
     	}
-    	return bout.toByteArray();
+    	return written;
+    }
+
+    /** Encodes the message into the array, starting at the specified offset, the same way
+     * as writeTo(ByteBuffer, int) does.
+     * @return The number of bytes written.
+     * @throws BufferOverflowException if the message doesn't fit between the offset and the end
+     * of the array. */
+    public int writeTo(byte[] dst, int offset, int lengthBytes) {
+    	return writeTo(ByteBuffer.wrap(dst, offset, dst.length - offset), lengthBytes);
     }
 
     /** Returns a string representation of the message, as if it were encoded
@@ -481,25 +887,11 @@ public class IsoMessage implements Serializable {
         sb.append(String.format("%04x", type));
 
         //Bitmap
-        BitSet bs = createBitmapBitSet();
-        int pos = 0;
-        int lim = bs.size() / 4;
-        for (int i = 0; i < lim; i++) {
-            int nibble = 0;
-            if (bs.get(pos++))
-               nibble |= 8;
-            if (bs.get(pos++))
-               nibble |= 4;
-            if (bs.get(pos++))
-               nibble |= 2;
-            if (bs.get(pos++))
-               nibble |= 1;
-            sb.append(new String(HEX, nibble, 1));
-        }
+        sb.append(new String(encodeBitmap(false), StandardCharsets.US_ASCII));
 
         //Fields
-        for (int i = 2; i < 129; i++) {
-            IsoValue<?> v = fields[i];
+        for (int i = nextField(2); i > 0; i = nextField(i + 1)) {
+            IsoValue<?> v = getField(i);
             if (v != null) {
                 String desc = v.toString();
                 if (v.getType() == IsoType.LLBIN || v.getType() == IsoType.LLVAR) {
@@ -553,6 +945,25 @@ public class IsoMessage implements Serializable {
         }
     }
 
+    /** Decodes any remaining fields before the message is serialized, since the original
+     * buffer is not serialized. */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        for (int i = nextField(2); raw != null && i > 0; i = nextField(i + 1)) {
+            getField(i);
+        }
+        out.defaultWriteObject();
+    }
+
+    /** Rebuilds the bitmap, which is not serialized. */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        for (int i = 2; i < 129; i++) {
+            if (fields[i] != null) {
+                updateBitmap(i, true);
+            }
+        }
+    }
+
     /** Returns true is the message contains all the specified fields.
      * A convenience for m.hasField(x) && m.hasField(y) && m.hasField(z) && ... */
     public boolean hasEveryField(int... idx) {
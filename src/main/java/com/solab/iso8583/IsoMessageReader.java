@@ -0,0 +1,445 @@
+/*
+j8583 A Java implementation of the ISO8583 protocol
+Copyright (C) 2007 Enrique Zamudio Lopez
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+*/
+package com.solab.iso8583;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UnsupportedEncodingException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/** Reads messages from a stream or channel, one frame at a time. Each frame is a length
+ * header followed by the message and an optional ETX byte, as written by
+ * {@link IsoMessage#write(java.io.OutputStream, int)}; the length includes the ETX.
+ * The frames are read into an internal buffer that is reused and grows as needed, up to
+ * the maximum frame size, and are parsed in place by the MessageFactory.
+ * <P>
+ * A reader is meant to be used by a single thread, on a single stream or blocking channel.
+ * After an exception about the framing (bad length header, frame too big, missing ETX)
+ * the stream is out of sync and should be closed.
+ */
+public class IsoMessageReader<T extends IsoMessage> {
+
+    /** How the length header is encoded. */
+    public enum LengthEncoding {
+        /** An unsigned big-endian number, as written by IsoMessage.write. */
+        BINARY,
+        /** ASCII decimal digits, one per byte. */
+        ASCII,
+        /** Packed decimal digits, two per byte. */
+        BCD
+    }
+
+    public static final int DEFAULT_MAX_FRAME_SIZE = 65536;
+    /** The largest part of a file that is mapped at once by parseAll. */
+    private static final long MAX_CHUNK = 1L << 30;
+
+    private final MessageFactory<T> factory;
+    private final int lengthBytes;
+    private LengthEncoding lengthEncoding = LengthEncoding.BINARY;
+    private int etx = -1;
+    private int maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+    private int isoHeaderLength;
+    private boolean binaryIsoHeader;
+    private byte[] buf = new byte[1024];
+    private ByteBuffer wrapper = ByteBuffer.wrap(buf);
+
+    /** Creates a reader for frames with a binary length header of the specified size.
+     * @param factory The factory that will parse the messages.
+     * @param lengthBytes The size of the length header, from 1 to 4. */
+    public IsoMessageReader(MessageFactory<T> factory, int lengthBytes) {
+        if (lengthBytes < 1 || lengthBytes > 4) {
+            throw new IllegalArgumentException("The length header must have between 1 and 4 bytes");
+        }
+        this.factory = factory;
+        this.lengthBytes = lengthBytes;
+    }
+
+    public MessageFactory<T> getMessageFactory() {
+        return factory;
+    }
+    public int getLengthBytes() {
+        return lengthBytes;
+    }
+
+    /** Sets how the length header is encoded. Default is BINARY. */
+    public void setLengthEncoding(LengthEncoding value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Length encoding cannot be null");
+        }
+        lengthEncoding = value;
+    }
+    public LengthEncoding getLengthEncoding() {
+        return lengthEncoding;
+    }
+
+    /** Sets the ETX character expected at the end of each frame, or -1 (the default)
+     * if frames have no terminator. */
+    public void setEtx(int value) {
+        etx = value;
+    }
+    public int getEtx() {
+        return etx;
+    }
+
+    /** Sets the maximum length of a frame, not counting the length header. Longer frames are
+     * rejected as soon as their length header is read, without reading or allocating anything
+     * for them. Default is 65536. */
+    public void setMaxFrameSize(int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Maximum frame size must be positive");
+        }
+        maxFrameSize = value;
+    }
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    /** Sets the length of the ISO header that comes before the message type, and whether it's
+     * binary. These are passed to the MessageFactory when parsing. Default is 0. */
+    public void setIsoHeader(int length, boolean binary) {
+        isoHeaderLength = length;
+        binaryIsoHeader = binary;
+    }
+
+    /** Reads and parses the next message from the stream.
+     * @return The message, or null if the stream ended before a new frame.
+     * @throws EOFException if the stream ends in the middle of a frame.
+     * @throws IOException if the frame is invalid or there's a problem reading the stream.
+     * @throws ParseException if the message cannot be parsed. */
+    public T read(InputStream in) throws IOException, ParseException {
+        final int len = readFrame(in);
+        return len < 0 ? null : parse(len);
+    }
+
+    /** Reads and parses the next message from a blocking channel.
+     * @return The message, or null if the channel reached end-of-stream before a new frame.
+     * @throws EOFException if the channel reaches end-of-stream in the middle of a frame.
+     * @throws IOException if the frame is invalid or there's a problem reading the channel.
+     * @throws ParseException if the message cannot be parsed. */
+    public T read(ReadableByteChannel ch) throws IOException, ParseException {
+        final int len = readFrame(ch);
+        return len < 0 ? null : parse(len);
+    }
+
+    /** Reads the next message from the stream and parses it with
+     * {@link MessageFactory#tryParse(byte[], int, int, int, boolean, ParseResult)}, so a frame
+     * with an invalid message doesn't cost an exception.
+     * @return false if the stream ended before a new frame, true if a frame was read, in which
+     * case the result has the message or the reason it couldn't be parsed. */
+    public boolean tryRead(InputStream in, ParseResult<T> result) throws IOException {
+        final int len = readFrame(in);
+        if (len < 0) {
+            return false;
+        }
+        tryParse(len, result);
+        return true;
+    }
+
+    /** Reads the next message from a blocking channel and parses it with
+     * {@link MessageFactory#tryParse(byte[], int, int, int, boolean, ParseResult)}.
+     * @return false if the channel reached end-of-stream before a new frame, true if a frame
+     * was read, in which case the result has the message or the reason it couldn't be parsed. */
+    public boolean tryRead(ReadableByteChannel ch, ParseResult<T> result) throws IOException {
+        final int len = readFrame(ch);
+        if (len < 0) {
+            return false;
+        }
+        tryParse(len, result);
+        return true;
+    }
+
+    /** Reads a frame into the buffer and returns the length of the message, without the ETX,
+     * or -1 if the stream ended before the frame. */
+    private int readFrame(InputStream in) throws IOException {
+        if (!readFully(in, lengthBytes, true)) {
+            return -1;
+        }
+        final int len = decodeLength();
+        readFully(in, len, false);
+        return checkEtx(len);
+    }
+
+    private int readFrame(ReadableByteChannel ch) throws IOException {
+        if (!readFully(ch, lengthBytes, true)) {
+            return -1;
+        }
+        final int len = decodeLength();
+        readFully(ch, len, false);
+        return checkEtx(len);
+    }
+
+    /** Reads the specified number of bytes at the start of the buffer. Returns false if the stream
+     * ended before the first byte and that's allowed. */
+    private boolean readFully(InputStream in, int len, boolean eofAllowed) throws IOException {
+        int pos = 0;
+        while (pos < len) {
+            final int n = in.read(buf, pos, len - pos);
+            if (n < 0) {
+                if (pos == 0 && eofAllowed) {
+                    return false;
+                }
+                throw new EOFException(String.format("Stream ended after %d of %d bytes", pos, len));
+            }
+            pos += n;
+        }
+        return true;
+    }
+
+    private boolean readFully(ReadableByteChannel ch, int len, boolean eofAllowed) throws IOException {
+        wrapper.clear().limit(len);
+        while (wrapper.hasRemaining()) {
+            if (ch.read(wrapper) < 0) {
+                if (wrapper.position() == 0 && eofAllowed) {
+                    return false;
+                }
+                throw new EOFException(String.format("Channel ended after %d of %d bytes",
+                        wrapper.position(), len));
+            }
+        }
+        return true;
+    }
+
+    /** Decodes the length header at the start of the buffer and makes sure the frame fits. */
+    private int decodeLength() throws IOException {
+        final long len = decodeLength(wrapper, 0);
+        if (len < 0) {
+            throw new IOException(String.format("Invalid %s length header", lengthEncoding));
+        }
+        checkLength(len);
+        final int flen = (int)len;
+        if (flen > buf.length) {
+            buf = Arrays.copyOf(buf, Math.min(Math.max(flen, buf.length * 2), maxFrameSize));
+            wrapper = ByteBuffer.wrap(buf);
+        }
+        return flen;
+    }
+
+    /** Decodes the length header at the specified position, returning -1 if it has invalid digits. */
+    long decodeLength(ByteBuffer frames, int pos) {
+        long len = 0;
+        for (int i = pos; i < pos + lengthBytes; i++) {
+            final int b = frames.get(i) & 0xff;
+            if (lengthEncoding == LengthEncoding.BINARY) {
+                len = (len << 8) | b;
+            } else if (lengthEncoding == LengthEncoding.ASCII) {
+                if (b < '0' || b > '9') {
+                    return -1;
+                }
+                len = (len * 10) + (b - '0');
+            } else {
+                if ((b >> 4) > 9 || (b & 0x0f) > 9) {
+                    return -1;
+                }
+                len = (len * 100) + ((b >> 4) * 10) + (b & 0x0f);
+            }
+        }
+        return len;
+    }
+
+    /** Throws an exception if the frame length is not valid. */
+    void checkLength(long len) throws IOException {
+        if (len > maxFrameSize) {
+            throw new IOException(String.format("Frame length %d exceeds maximum of %d", len, maxFrameSize));
+        }
+        if (len == 0 || (etx > -1 && len == 1)) {
+            throw new IOException("Empty frame");
+        }
+    }
+
+    /** Checks the ETX at the end of the frame, if there should be one, and returns the message length. */
+    private int checkEtx(int len) throws IOException {
+        if (etx < 0) {
+            return len;
+        }
+        if ((buf[len - 1] & 0xff) != etx) {
+            throw new IOException(String.format("Expected ETX 0x%02x at end of frame, found 0x%02x",
+                    etx, buf[len - 1] & 0xff));
+        }
+        return len - 1;
+    }
+
+    int getIsoHeaderLength() {
+        return isoHeaderLength;
+    }
+    boolean isBinaryIsoHeader() {
+        return binaryIsoHeader;
+    }
+
+    /** Returns a stream of the results of parsing all the frames in the buffer, between its
+     * position and its limit, in the same order as the frames. The buffer's position and limit
+     * are not modified, and it must not be modified while the stream is in use. The frames are
+     * parsed with this reader's settings, but its internal buffer is not used, so a parallel
+     * stream can parse frames on many threads at once, as long as the MessageFactory is not
+     * reconfigured in the meantime (freezing it is recommended). Framing errors are thrown
+     * as UncheckedIOException.
+     * @param frames The frames, each one with a length header.
+     * @param parallel Whether to return a parallel stream. */
+    public Stream<ParseResult<T>> stream(ByteBuffer frames, boolean parallel) {
+        return StreamSupport.stream(new FrameSpliterator<>(this, frames, frames.position(), frames.limit()),
+                parallel);
+    }
+
+    /** Convenience for parseAll(frames, ForkJoinPool.commonPool()) */
+    public List<T> parseAll(ByteBuffer frames) throws IOException, ParseException {
+        return parseAll(frames, ForkJoinPool.commonPool());
+    }
+
+    /** Parses all the frames in the buffer in parallel, in the specified pool, returning the
+     * messages in the same order as the frames.
+     * @throws ParseException for the first frame (in order) that can't be parsed. */
+    public List<T> parseAll(ByteBuffer frames, ForkJoinPool pool) throws IOException, ParseException {
+        final MessageCollector<T> messages = new MessageCollector<>();
+        run(pool, () -> stream(frames, true).forEachOrdered(messages));
+        return messages.getMessages();
+    }
+
+    /** Convenience for parseAll(file, ForkJoinPool.commonPool()) */
+    public List<T> parseAll(Path file) throws IOException, ParseException {
+        return parseAll(file, ForkJoinPool.commonPool());
+    }
+
+    /** Parses all the frames in the file in parallel, in the specified pool, returning the
+     * messages in the same order as the frames. All the messages of the file are kept in
+     * the list, so it must fit in memory; files with more messages than that can be parsed
+     * with forEach(Path, ForkJoinPool, Consumer) instead.
+     * @throws ParseException for the first frame (in order) that can't be parsed. */
+    public List<T> parseAll(Path file, ForkJoinPool pool) throws IOException, ParseException {
+        final MessageCollector<T> messages = new MessageCollector<>();
+        forEach(file, pool, messages);
+        return messages.getMessages();
+    }
+
+    /** Parses all the frames in the file in parallel, in the specified pool, and passes the
+     * results to the action in the same order as the frames, one at a time. The file is mapped
+     * into memory in chunks that end on frame boundaries, so it can be larger than 2GB, and
+     * only the results that are waiting for the action are kept, so it can have any number of
+     * messages. The action is called from the pool's threads; if it throws an exception,
+     * parsing stops and the exception is thrown by this method.
+     * @throws IOException if the framing is invalid or the file can't be read. */
+    public void forEach(Path file, ForkJoinPool pool, Consumer<? super ParseResult<T>> action)
+            throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = ch.size();
+            long start = 0;
+            while (start < size) {
+                final MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(size - start, MAX_CHUNK));
+                //Only take the frames that are complete in this chunk
+                int end = 0;
+                while (end + lengthBytes <= map.limit()) {
+                    final long len = decodeLength(map, end);
+                    if (len < 0) {
+                        throw new IOException(String.format("Invalid %s length header at %d",
+                                lengthEncoding, start + end));
+                    }
+                    checkLength(len);
+                    if (end + lengthBytes + len > map.limit()) {
+                        break;
+                    }
+                    end += lengthBytes + (int)len;
+                }
+                if (end == 0) {
+                    throw new EOFException(String.format("Incomplete frame at %d", start));
+                }
+                map.limit(end);
+                run(pool, () -> stream(map, true).forEachOrdered(action));
+                start += end;
+            }
+        }
+    }
+
+    /** Runs the task in the pool and waits for it, throwing what it throws. */
+    private static void run(ForkJoinPool pool, Runnable task) throws IOException {
+        try {
+            pool.submit(task).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing frames");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException)ex.getCause()).getCause();
+            } else if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)ex.getCause();
+            } else if (ex.getCause() instanceof Error) {
+                throw (Error)ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    /** Keeps the messages of the results it gets, in order, until one of them is an error. */
+    private static final class MessageCollector<T extends IsoMessage> implements Consumer<ParseResult<T>> {
+        private final List<T> messages = new ArrayList<>();
+        private ParseResult<T> error;
+
+        @Override
+        public void accept(ParseResult<T> r) {
+            if (error != null) {
+                return;
+            }
+            if (r.isSuccess()) {
+                messages.add(r.getMessage());
+            } else {
+                error = r;
+            }
+        }
+
+        /** Returns the messages, or throws the error of the first result that had one. */
+        List<T> getMessages() throws ParseException, UnsupportedEncodingException {
+            if (error != null) {
+                error.throwError();
+            }
+            return messages;
+        }
+    }
+
+    private T parse(int len) throws IOException, ParseException {
+        if (factory.isBufferReferenced()) {
+            //Lazy messages, ByteStrings and echoed fields keep the buffer, so they can't have the one we reuse
+            return factory.parseMessage(Arrays.copyOf(buf, len), 0, len, isoHeaderLength, binaryIsoHeader);
+        }
+        return factory.parseMessage(buf, 0, len, isoHeaderLength, binaryIsoHeader);
+    }
+
+    private void tryParse(int len, ParseResult<T> result) {
+        if (factory.isBufferReferenced()) {
+            factory.tryParse(Arrays.copyOf(buf, len), 0, len, isoHeaderLength, binaryIsoHeader, result);
+        } else {
+            factory.tryParse(buf, 0, len, isoHeaderLength, binaryIsoHeader, result);
+        }
+    }
+
+}
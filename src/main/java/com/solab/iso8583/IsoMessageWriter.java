@@ -0,0 +1,230 @@
+/*
+j8583 A Java implementation of the ISO8583 protocol
+Copyright (C) 2007 Enrique Zamudio Lopez
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+*/
+package com.solab.iso8583;
+
+import com.solab.iso8583.util.EncodeBuffer;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/** Writes framed messages to a stream or channel: each one with its length header, followed by
+ * the message and its ETX, if it has one, the same way as {@link IsoMessage#write(OutputStream, int)}.
+ * This is the counterpart of {@link IsoMessageReader}.
+ * <P>
+ * The frames are appended to an internal buffer, which is written to the stream or channel
+ * when it reaches the flush threshold, and written and flushed according to the flush policy;
+ * this way many messages (for example a batch file, or pipelined requests on a socket)
+ * can be written with a few big writes. A writer is meant to be used by a single thread.
+ */
+public class IsoMessageWriter implements Flushable, Closeable {
+
+    /** When the buffered messages are written out and the stream is flushed. */
+    public enum FlushPolicy {
+        /** After every message. */
+        IMMEDIATE,
+        /** After every N messages, as set with setFlushEvery(). */
+        EVERY_N,
+        /** Only when flush() or close() is called. */
+        ON_DEMAND
+    }
+
+    public static final int DEFAULT_FLUSH_THRESHOLD = 65536;
+
+    private final OutputStream out;
+    private final WritableByteChannel channel;
+    private final int lengthBytes;
+    private IsoMessageReader.LengthEncoding lengthEncoding = IsoMessageReader.LengthEncoding.BINARY;
+    private int flushThreshold = DEFAULT_FLUSH_THRESHOLD;
+    private FlushPolicy flushPolicy = FlushPolicy.ON_DEMAND;
+    private int flushEvery = 1;
+    private int pending;
+    private final EncodeBuffer buf = new EncodeBuffer(4096);
+
+    /** Creates a writer for frames with a length header of the specified size.
+     * @param out The stream to write to.
+     * @param lengthBytes The size of the length header, from 0 to 4. */
+    public IsoMessageWriter(OutputStream out, int lengthBytes) {
+        this(out, null, lengthBytes);
+    }
+
+    /** Creates a writer for frames with a length header of the specified size.
+     * @param channel The channel to write to, which must be blocking.
+     * @param lengthBytes The size of the length header, from 0 to 4. */
+    public IsoMessageWriter(WritableByteChannel channel, int lengthBytes) {
+        this(null, channel, lengthBytes);
+    }
+
+    private IsoMessageWriter(OutputStream out, WritableByteChannel channel, int lengthBytes) {
+        if (lengthBytes < 0 || lengthBytes > 4) {
+            throw new IllegalArgumentException("The length header can have at most 4 bytes");
+        }
+        this.out = out;
+        this.channel = channel;
+        this.lengthBytes = lengthBytes;
+    }
+
+    public int getLengthBytes() {
+        return lengthBytes;
+    }
+
+    /** Sets how the length header is encoded. Default is BINARY. */
+    public void setLengthEncoding(IsoMessageReader.LengthEncoding value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Length encoding cannot be null");
+        }
+        lengthEncoding = value;
+    }
+    public IsoMessageReader.LengthEncoding getLengthEncoding() {
+        return lengthEncoding;
+    }
+
+    /** Sets the number of buffered bytes after which the buffer is written out.
+     * 0 writes every message as soon as it's added. Default is 65536. */
+    public void setFlushThreshold(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Flush threshold cannot be negative");
+        }
+        flushThreshold = value;
+    }
+    public int getFlushThreshold() {
+        return flushThreshold;
+    }
+
+    /** Sets when the buffered messages are written out and the stream is flushed.
+     * Default is ON_DEMAND. */
+    public void setFlushPolicy(FlushPolicy value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Flush policy cannot be null");
+        }
+        flushPolicy = value;
+    }
+    public FlushPolicy getFlushPolicy() {
+        return flushPolicy;
+    }
+
+    /** Sets the number of messages after which the writer flushes, with the EVERY_N policy. */
+    public void setFlushEvery(int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Must flush every 1 or more messages");
+        }
+        flushEvery = value;
+    }
+    public int getFlushEvery() {
+        return flushEvery;
+    }
+
+    /** Returns the number of bytes that haven't been written out yet. */
+    public int getBufferedBytes() {
+        return buf.size();
+    }
+
+    /** Adds a message to the buffer, writes out the buffer if it reaches the threshold,
+     * and flushes if the flush policy says so.
+     * @return The size of the frame, including the length header.
+     * @throws IOException if the length doesn't fit in the length header, or if there's
+     * a problem writing to the stream or channel. */
+    public int write(IsoMessage m) throws IOException {
+        final int start = buf.size();
+        final int len = m.writeTo(buf, lengthBytes);
+        if (lengthEncoding != IsoMessageReader.LengthEncoding.BINARY) {
+            encodeLength(start, len - lengthBytes);
+        } else if (lengthBytes > 0 && lengthBytes < 4 && len - lengthBytes >= 1L << (8 * lengthBytes)) {
+            //the header written by the message only has the low bytes of the length
+            buf.truncate(start);
+            throw tooLong(len - lengthBytes);
+        }
+        pending++;
+        if (flushPolicy == FlushPolicy.IMMEDIATE
+                || (flushPolicy == FlushPolicy.EVERY_N && pending >= flushEvery)) {
+            flush();
+        } else if (buf.size() >= flushThreshold) {
+            drain();
+        }
+        return len;
+    }
+
+    /** Replaces the binary length header at the specified position with ASCII or BCD digits. */
+    private void encodeLength(int pos, int len) throws IOException {
+        final boolean ascii = lengthEncoding == IsoMessageReader.LengthEncoding.ASCII;
+        int l = len;
+        for (int i = pos + lengthBytes - 1; i >= pos; i--) {
+            if (ascii) {
+                buf.set(i, (l % 10) + '0');
+                l /= 10;
+            } else {
+                buf.set(i, ((l / 10 % 10) << 4) | (l % 10));
+                l /= 100;
+            }
+        }
+        if (l > 0) {
+            buf.truncate(pos);
+            throw tooLong(len);
+        }
+    }
+
+    private IOException tooLong(int len) {
+        return new IOException(String.format("Frame length %d doesn't fit in a %d-byte %s length header",
+                len, lengthBytes, lengthEncoding));
+    }
+
+    /** Writes out the buffer, without flushing the stream. */
+    private void drain() throws IOException {
+        if (buf.size() == 0) {
+            return;
+        }
+        if (out != null) {
+            buf.writeTo(out);
+        } else {
+            final ByteBuffer bb = buf.asByteBuffer();
+            while (bb.hasRemaining()) {
+                channel.write(bb);
+            }
+        }
+        buf.reset();
+    }
+
+    /** Writes out the buffered messages and flushes the stream. */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        pending = 0;
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    /** Writes out the buffered messages and closes the stream or channel. */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (out != null) {
+                out.close();
+            } else {
+                channel.close();
+            }
+        }
+    }
+
+}
@@ -18,11 +18,18 @@ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
 */
 package com.solab.iso8583;
 
+import com.solab.iso8583.util.Bcd;
+import com.solab.iso8583.util.DateCodec;
+import com.solab.iso8583.util.Digits;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.text.SimpleDateFormat;
+import java.util.Calendar;
 import java.util.Date;
+import java.util.GregorianCalendar;
 import java.util.TimeZone;
 
 /** Defines the possible values types that can be used in the fields.
@@ -72,6 +79,15 @@ public enum IsoType {
     /** Date in format yyMMdd */
     DATE6(false,6);
 
+	/** Each thread reuses its calendar to get the week year of DATE14 dates, instead of creating
+	 * a SimpleDateFormat every time. */
+	private static final ThreadLocal<Calendar> CALENDAR = new ThreadLocal<Calendar>() {
+		@Override
+		protected Calendar initialValue() {
+			return Calendar.getInstance();
+		}
+	};
+
 	private boolean needsLen;
 	private int length;
 
@@ -93,6 +109,10 @@ public enum IsoType {
 	/** Formats a Date if the receiver is DATE10, DATE4, DATE_EXP, DATE12, DATE14 or TIME; throws an exception
 	 * otherwise. */
 	public String format(final Date value, final TimeZone tz) {
+		final long digits = dateDigits(value, tz);
+		if (digits >= 0) {
+			return Digits.format(digits, length);
+		}
         final SimpleDateFormat sdf;
 		if (this == DATE10) {
             sdf = new SimpleDateFormat("MMddHHmmss");
@@ -117,6 +137,79 @@ public enum IsoType {
         return sdf.format(value);
 	}
 
+	/** Writes a Date in the format of the receiver (DATE10, DATE4, DATE_EXP, DATE12, DATE14, DATE6
+	 * or TIME) straight to the stream, as ASCII digits or as BCD, without creating a String.
+	 * Throws an exception if the receiver is not a date type. */
+	public void write(final Date value, final TimeZone tz, final OutputStream outs, final boolean bcd)
+			throws IOException {
+		long digits = dateDigits(value, tz);
+		if (digits < 0) {
+			//Dates that don't fit in the format are written the way SimpleDateFormat does
+			final String s = format(value, tz);
+			if (bcd) {
+				final byte[] buf = new byte[length / 2];
+				Bcd.encode(s, buf);
+				outs.write(buf);
+			} else {
+				for (int i = 0; i < s.length(); i++) {
+					outs.write(s.charAt(i));
+				}
+			}
+		} else if (bcd) {
+			Digits.writeBcd(digits, length, outs);
+		} else {
+			Digits.writeAscii(digits, length, outs);
+		}
+	}
+
+	/** Returns the date in the format of the receiver as a number (for example MMddHHmmss
+	 * for DATE10), or -1 if it can't be represented that way, in which case SimpleDateFormat
+	 * must be used. */
+	private long dateDigits(final Date value, final TimeZone tz) {
+		if (this != DATE10 && this != DATE4 && this != DATE_EXP && this != TIME
+				&& this != DATE12 && this != DATE14 && this != DATE6) {
+			throw new IllegalArgumentException("Cannot format date as " + this);
+		}
+		if (this == DATE14) {
+			//YYYY is the week year, which depends on the locale, so this one needs a calendar
+			final Calendar cal = CALENDAR.get();
+			if (!(cal instanceof GregorianCalendar)) {
+				return -1;
+			}
+			cal.setTimeZone(tz == null ? TimeZone.getDefault() : tz);
+			cal.setTime(value);
+			if (cal.get(Calendar.ERA) != GregorianCalendar.AD) {
+				return -1;
+			}
+			final long year = cal.getWeekYear();
+			final long mmdd = (cal.get(Calendar.MONTH) + 1) * 100 + cal.get(Calendar.DAY_OF_MONTH);
+			final long time = cal.get(Calendar.HOUR_OF_DAY) * 10000 + cal.get(Calendar.MINUTE) * 100
+					+ cal.get(Calendar.SECOND);
+			return year < 1 || year > 9999 ? -1 : (year * 10000 + mmdd) * 1000000 + time;
+		}
+		final long local = DateCodec.toLocalMillis(tz, value.getTime());
+		if (!DateCodec.isGregorian(local)) {
+			return -1;
+		}
+		final long date = DateCodec.toYmd(Math.floorDiv(local, DateCodec.MILLIS_PER_DAY));
+		final long secs = Math.floorMod(local, DateCodec.MILLIS_PER_DAY) / 1000;
+		final long yy = date / 10000 % 100;
+		final long mmdd = date % 10000;
+		final long time = secs / 3600 * 10000 + secs / 60 % 60 * 100 + secs % 60;
+		if (this == DATE10) {
+			return mmdd * 1000000 + time;
+		} else if (this == DATE4) {
+			return mmdd;
+		} else if (this == DATE_EXP) {
+			return yy * 100 + mmdd / 100;
+		} else if (this == TIME) {
+			return time;
+		} else if (this == DATE12) {
+			return (yy * 10000 + mmdd) * 1000000 + time;
+		}
+		return yy * 10000 + mmdd;
+	}
+
 	/** Formats the string to the given length (length is only useful if type is ALPHA, NUMERIC or BINARY). */
 	@SuppressFBWarnings
 	public String format(String value, int length) {
@@ -129,7 +222,11 @@ public enum IsoType {
 	        } else if (value.length() == length) {
 	        	return value;
 	        } else {
-	        	return String.format(String.format("%%-%ds", length), value);
+	        	final StringBuilder sb = new StringBuilder(length).append(value);
+	        	while (sb.length() < length) {
+	        		sb.append(' ');
+	        	}
+	        	return sb.toString();
 	        }
 		} else if (this == LLVAR || this == LLLVAR || this == LLLLVAR) {
 			return value;
@@ -178,6 +275,9 @@ public enum IsoType {
 	/** Formats the integer value as a NUMERIC, an AMOUNT, or a String. */
 	public String format(long value, int length) {
 		if (this == NUMERIC) {
+			if (Digits.fits(value, length)) {
+				return Digits.format(value, length);
+			}
 			String x = String.format(String.format("%%0%dd", length), value);
 	        if (x.length() > length) {
 	        	throw new IllegalArgumentException("Numeric value is larger than intended length: " + value + " LEN " + length);
@@ -186,6 +286,9 @@ public enum IsoType {
 		} else if (this == ALPHA || this == LLVAR || this == LLLVAR || this == LLLLVAR) {
 			return format(Long.toString(value), length);
 		} else if (this == AMOUNT) {
+			if (Digits.fits(value, 10)) {
+				return Digits.format(value * 100, 12);
+			}
 			return String.format("%010d00", value);
 		} else if (this == BINARY || this == LLBIN || this == LLLBIN || this == LLLLBIN) {
 			//TODO
@@ -196,7 +299,8 @@ public enum IsoType {
 	/** Formats the BigDecimal as an AMOUNT, NUMERIC, or a String. */
 	public String format(BigDecimal value, int length) {
 		if (this == AMOUNT) {
-			return String.format("%012d", value.movePointRight(2).longValue());
+			final long cents = value.movePointRight(2).longValue();
+			return Digits.fits(cents, 12) ? Digits.format(cents, 12) : String.format("%012d", cents);
 		} else if (this == NUMERIC) {
 			return format(value.longValue(), length);
 		} else if (this == ALPHA || this == LLVAR || this == LLLVAR || this == LLLLVAR) {
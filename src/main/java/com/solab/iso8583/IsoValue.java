@@ -19,14 +19,21 @@ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
 package com.solab.iso8583;
 
 import com.solab.iso8583.util.Bcd;
+import com.solab.iso8583.util.ByteString;
+import com.solab.iso8583.util.Digits;
+import com.solab.iso8583.util.EncodedLength;
 import com.solab.iso8583.util.HexCodec;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.Date;
 import java.util.TimeZone;
 
@@ -35,12 +42,17 @@ import java.util.TimeZone;
  * Some values have a fixed length, other values require a length to be specified
  * so that the value can be padded to the specified length. LLVAR and LLLVAR
  * values do not need a length specification because the length is calculated
- * from the stored value.
+ * from the stored value. Date types can store a Date, an Instant (formatted in the
+ * value's timezone, like a Date) or a LocalDateTime (formatted with its own fields).
+ * Text values can be any CharSequence; a ByteString is written with its original bytes
+ * when the encoding allows it.
  * 
  * @author Enrique Zamudio
  */
 public class IsoValue<T> implements Cloneable, Serializable {
 
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
 	private IsoType type;
 	private T value;
 	private CustomField<T> encoder;
@@ -50,6 +62,8 @@ public class IsoValue<T> implements Cloneable, Serializable {
     private TimeZone tz;
     private Boolean binaryLength;
     private Boolean binaryValue;
+    /** The bytes from preEncode, shared with the clones of this value. */
+    private transient Encoded encoded;
 
 	public IsoValue(IsoType t, T value) {
 		this(t, value, null);
@@ -72,7 +86,7 @@ public class IsoValue<T> implements Cloneable, Serializable {
 
 		if (type == IsoType.LLVAR || type == IsoType.LLLVAR || type == IsoType.LLLLVAR) {
 			if (custom == null) {
-				length = value.toString().length();
+				length = value instanceof CharSequence ? ((CharSequence)value).length() : value.toString().length();
 			} else {
 				String enc = custom.encodeField(value);
 				if (enc == null) {
@@ -216,6 +230,9 @@ public class IsoValue<T> implements Cloneable, Serializable {
 
     /** Sets the timezone, useful for date fields. */
     public void setTimeZone(TimeZone value) {
+        if (value != tz) {
+            encoded = null;
+        }
         tz = value;
     }
     public TimeZone getTimeZone() {
@@ -227,12 +244,15 @@ public class IsoValue<T> implements Cloneable, Serializable {
 	}
 
 	public void setBinaryLength(Boolean binaryLength) {
+		if (binaryLength != this.binaryLength) {
+			encoded = null;
+		}
 		this.binaryLength = binaryLength;
 	}
 
 	public void setBinaryLengthIfNotSet(Boolean binaryLength) {
     	if (this.binaryLength == null) {
-    		this.binaryLength = binaryLength;
+    		setBinaryLength(binaryLength);
 		}
 	}
 
@@ -241,12 +261,15 @@ public class IsoValue<T> implements Cloneable, Serializable {
 	}
 
 	public void setBinaryValue(Boolean binaryValue) {
+		if (binaryValue != this.binaryValue) {
+			encoded = null;
+		}
 		this.binaryValue = binaryValue;
 	}
 
 	public void setBinaryValueIfNotSet(Boolean binaryValue) {
     	if (this.binaryValue == null) {
-    		this.binaryValue = binaryValue;
+    		setBinaryValue(binaryValue);
 		}
 	}
 
@@ -277,6 +300,8 @@ public class IsoValue<T> implements Cloneable, Serializable {
 			return encoder == null ? value.toString() : encoder.encodeField(value);
 		} else if (value instanceof Date) {
 			return type.format((Date)value, tz);
+		} else if (value instanceof Instant || value instanceof LocalDateTime) {
+			return type.format(asDate(), dateZone());
 		} else if (type == IsoType.BINARY) {
 			if (value instanceof byte[]) {
                 final byte[] _v = (byte[])value;
@@ -375,6 +400,237 @@ public class IsoValue<T> implements Cloneable, Serializable {
         }
     }
 
+	/** Returns the number of bytes that write() produces for this value with the same arguments,
+	 * including the length header if it's a variable length type, without writing anything.
+	 * NUMERIC, AMOUNT and date values are sized from their type and length, and so are ALPHA and
+	 * LLVAR strings in single-byte encodings. Other text values are formatted and measured
+	 * (ALPHA and LLVAR in multi-byte encodings, custom encoders, dates stored as strings),
+	 * and values with a CustomBinaryField encoder in binary fields are encoded. */
+	@SuppressFBWarnings
+	public int encodedLength(final boolean binary, final boolean forceStringEncoding) {
+		final byte[] pre = getEncoded(binary, forceStringEncoding);
+		if (pre != null) {
+			return pre.length;
+		}
+		final boolean binaryLength = this.binaryLength != null ? this.binaryLength : binary;
+		final boolean binaryValue = this.binaryValue != null ? this.binaryValue : binary;
+		int size = 0;
+		if (type == IsoType.LLLVAR || type == IsoType.LLVAR || type == IsoType.LLLLVAR) {
+			size = lengthHeaderLength(length, type, binaryLength, forceStringEncoding);
+		} else if (type == IsoType.LLBIN || type == IsoType.LLLBIN || type == IsoType.LLLLBIN) {
+			size = lengthHeaderLength(binaryValue ? length : length*2, type, binaryLength, forceStringEncoding);
+		} else if (type == IsoType.LLNUM) {
+			size = lengthHeaderLength(originLength, type, binaryLength, forceStringEncoding);
+		} else if (binaryValue) {
+			//numeric types in binary are coded in BCD
+			if (type == IsoType.NUMERIC) {
+				return (length / 2) + (length % 2);
+			} else if (type == IsoType.AMOUNT) {
+				return 6;
+			} else if (type == IsoType.DATE10 || type == IsoType.DATE4 ||
+					type == IsoType.DATE_EXP || type == IsoType.TIME ||
+					type == IsoType.DATE12 || type == IsoType.DATE14) {
+				return length / 2;
+			}
+		}
+		if (binaryValue && (type == IsoType.BINARY || type == IsoType.LLBIN || type == IsoType.LLLBIN || type == IsoType.LLLLBIN
+				|| type == IsoType.LLNUM || type == IsoType.NUM)) {
+			final int len;
+			if (value instanceof byte[]) {
+				len = ((byte[])value).length;
+			} else if (encoder instanceof CustomBinaryField) {
+				len = ((CustomBinaryField<T>) encoder).encodeBinaryField(value).length;
+			} else {
+				//hex digits, odd counts are padded
+				len = (value.toString().length() + 1) / 2;
+			}
+			return size + (type == IsoType.BINARY ? Math.max(len, length) : len);
+		}
+		if (value != null && !binaryValue) {
+			if (type == IsoType.NUMERIC || (value instanceof Date || value instanceof Instant
+					|| value instanceof LocalDateTime) && (type == IsoType.DATE10 || type == IsoType.DATE4
+					|| type == IsoType.DATE6 || type == IsoType.DATE_EXP || type == IsoType.TIME
+					|| type == IsoType.DATE12 || type == IsoType.DATE14)) {
+				//formatted with exactly as many digits as the length, or not at all
+				return EncodedLength.ascii(length, encoding);
+			} else if (type == IsoType.AMOUNT) {
+				return EncodedLength.ascii(12, encoding);
+			} else if (encoder == null && value instanceof CharSequence
+					&& EncodedLength.isSingleByte(encoding)) {
+				final CharSequence cs = (CharSequence)value;
+				if (type == IsoType.ALPHA) {
+					//truncated or padded with spaces; a surrogate pair becomes a single byte
+					final int chars = Math.min(cs.length(), length);
+					return Character.codePointCount(cs, 0, chars) + length - chars;
+				} else if (type == IsoType.LLVAR || type == IsoType.LLLVAR || type == IsoType.LLLLVAR) {
+					return size + Character.codePointCount(cs, 0, cs.length());
+				}
+			}
+		}
+		if (encoder == null && value instanceof ByteString && ((ByteString)value).isEncodedAs(encoding)) {
+			//The original bytes are written, one per char
+			if (type == IsoType.ALPHA && ((ByteString)value).length() == length) {
+				return length;
+			} else if (type == IsoType.LLVAR || type == IsoType.LLLVAR || type == IsoType.LLLLVAR) {
+				return size + ((ByteString)value).length();
+			}
+		}
+		return size + EncodedLength.of(toString(), encoding);
+	}
+
+	/** Returns the number of bytes that writeLengthHeader() produces. */
+	private int lengthHeaderLength(final int l, final IsoType type, final boolean binary,
+								   final boolean forceStringEncoding) {
+		final int digits;
+		if (type == IsoType.LLLLBIN || type == IsoType.LLLLVAR) {
+			digits = 4;
+		} else if (type == IsoType.LLLBIN || type == IsoType.LLLVAR) {
+			digits = 3;
+		} else {
+			digits = 2;
+		}
+		if (binary) {
+			return digits == 2 ? 1 : 2;
+		} else if (forceStringEncoding) {
+			return EncodedLength.ascii(Math.max(digits, Integer.toString(l).length()), encoding);
+		}
+		return digits;
+	}
+
+	/** Encodes the value for text and binary messages, so that write() can just copy the bytes.
+	 * The bytes are shared with the clones of this value, and they're discarded when the value
+	 * is set to be encoded differently; the value object itself must not be modified after this.
+	 * A mode in which the value can't be encoded is left to be encoded as usual. */
+	void preEncode(final boolean forceStringEncoding) {
+		encoded = null;
+		final byte[] text = encodeNow(false, forceStringEncoding);
+		final byte[] bin = encodeNow(true, forceStringEncoding);
+		if (text != null || bin != null) {
+			encoded = new Encoded(text, bin, encoding, forceStringEncoding);
+		}
+	}
+
+	private byte[] encodeNow(final boolean binary, final boolean forceStringEncoding) {
+		final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		try {
+			write(bout, binary, forceStringEncoding);
+		} catch (IOException | RuntimeException ex) {
+			return null;
+		}
+		return bout.toByteArray();
+	}
+
+	/** Returns the bytes from preEncode for the specified mode, or null if they're not valid. */
+	private byte[] getEncoded(final boolean binary, final boolean forceStringEncoding) {
+		final Encoded enc = encoded;
+		if (enc == null || enc.forceStringEncoding != forceStringEncoding
+				|| (enc.encoding == null ? encoding != null : !enc.encoding.equals(encoding))) {
+			return null;
+		}
+		return binary ? enc.binary : enc.text;
+	}
+
+	/** The pre-encoded bytes of a value, for text and binary messages. */
+	private static final class Encoded {
+		private final byte[] text;
+		private final byte[] binary;
+		private final String encoding;
+		private final boolean forceStringEncoding;
+
+		private Encoded(byte[] text, byte[] binary, String encoding, boolean forceStringEncoding) {
+			this.text = text;
+			this.binary = binary;
+			this.encoding = encoding;
+			this.forceStringEncoding = forceStringEncoding;
+		}
+	}
+
+	/** Returns a Date, Instant or LocalDateTime value as a Date. A LocalDateTime is converted
+	 * as if it were in UTC, so that it's formatted with its own fields in dateZone(). */
+	private Date asDate() {
+		if (value instanceof Instant) {
+			return Date.from((Instant)value);
+		} else if (value instanceof LocalDateTime) {
+			return Date.from(((LocalDateTime)value).toInstant(ZoneOffset.UTC));
+		}
+		return (Date)value;
+	}
+
+	/** Returns the timezone in which the Date from asDate() must be formatted. */
+	private TimeZone dateZone() {
+		return value instanceof LocalDateTime ? UTC : tz;
+	}
+
+	/** Writes the value straight to the stream, for the common cases that don't need to be
+	 * formatted as a String first: numbers, amounts, dates, and ASCII text when the encoding
+	 * writes ASCII as single bytes. Returns false if the value must be written the usual way. */
+	private boolean writeDirect(final OutputStream outs, final boolean binaryValue) throws IOException {
+		if (encoder != null || value == null) {
+			return false;
+		}
+		if (type == IsoType.NUMERIC && value instanceof Number && !(value instanceof BigInteger)) {
+			final long v = ((Number)value).longValue();
+			if (!Digits.fits(v, length) || !(binaryValue || EncodedLength.isAsciiCompatible(encoding))) {
+				return false;
+			}
+			if (binaryValue) {
+				Digits.writeBcd(v, length, outs);
+			} else {
+				Digits.writeAscii(v, length, outs);
+			}
+			return true;
+		} else if (type == IsoType.AMOUNT && value instanceof BigDecimal) {
+			final long cents = ((BigDecimal)value).movePointRight(2).longValue();
+			if (!Digits.fits(cents, 12) || !(binaryValue || EncodedLength.isAsciiCompatible(encoding))) {
+				return false;
+			}
+			if (binaryValue) {
+				Digits.writeBcd(cents, 12, outs);
+			} else {
+				Digits.writeAscii(cents, 12, outs);
+			}
+			return true;
+		} else if ((value instanceof Date || value instanceof Instant || value instanceof LocalDateTime)
+				&& (type == IsoType.DATE10 || type == IsoType.DATE4
+				|| type == IsoType.DATE_EXP || type == IsoType.TIME || type == IsoType.DATE12
+				|| type == IsoType.DATE14 || type == IsoType.DATE6)) {
+			//DATE6 is always written as text
+			final boolean bcd = binaryValue && type != IsoType.DATE6;
+			if (!(bcd || EncodedLength.isAsciiCompatible(encoding))) {
+				return false;
+			}
+			type.write(asDate(), dateZone(), outs, bcd);
+			return true;
+		} else if (value instanceof ByteString && ((ByteString)value).isEncodedAs(encoding)
+				&& ((type == IsoType.ALPHA && ((ByteString)value).length() == length)
+				|| type == IsoType.LLVAR || type == IsoType.LLLVAR || type == IsoType.LLLLVAR)) {
+			((ByteString)value).writeTo(outs);
+			return true;
+		} else if (value instanceof CharSequence && (type == IsoType.ALPHA
+				|| type == IsoType.LLVAR || type == IsoType.LLLVAR || type == IsoType.LLLLVAR)) {
+			final CharSequence s = (CharSequence)value;
+			final int len = type == IsoType.ALPHA ? Math.min(s.length(), length) : s.length();
+			for (int i = 0; i < len; i++) {
+				if (s.charAt(i) >= 0x80) {
+					return false;
+				}
+			}
+			if (!EncodedLength.isAsciiCompatible(encoding)) {
+				return false;
+			}
+			for (int i = 0; i < len; i++) {
+				outs.write(s.charAt(i));
+			}
+			if (type == IsoType.ALPHA) {
+				for (int i = len; i < length; i++) {
+					outs.write(' ');
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
 	/** Writes the formatted value to a stream, with the length header
 	 * if it's a variable length type.
      * @param outs The stream to which the value will be written.
@@ -384,6 +640,11 @@ public class IsoValue<T> implements Cloneable, Serializable {
      * the length headers are encoded as ASCII; this used to be the only behavior. */
 	@SuppressFBWarnings
 	public void write(final OutputStream outs, final boolean binary, final boolean forceStringEncoding) throws IOException {
+		final byte[] pre = getEncoded(binary, forceStringEncoding);
+		if (pre != null) {
+			outs.write(pre);
+			return;
+		}
 		final boolean binaryLength = this.binaryLength != null ? this.binaryLength : binary;
 		final boolean binaryValue = this.binaryValue != null ? this.binaryValue : binary;
 		if (type == IsoType.LLLVAR || type == IsoType.LLVAR || type == IsoType.LLLLVAR) {
@@ -392,7 +653,13 @@ public class IsoValue<T> implements Cloneable, Serializable {
             writeLengthHeader(binaryValue ? length : length*2, outs, type, binaryLength, forceStringEncoding);
 		} else if (type == IsoType.LLNUM) {
 			writeLengthHeader(originLength, outs, type, binaryLength, forceStringEncoding);
-		} else if (binaryValue) {
+		}
+		if (writeDirect(outs, binaryValue)) {
+			return;
+		}
+		if (binaryValue && type != IsoType.LLLVAR && type != IsoType.LLVAR && type != IsoType.LLLLVAR
+				&& type != IsoType.LLBIN && type != IsoType.LLLBIN && type != IsoType.LLLLBIN
+				&& type != IsoType.LLNUM) {
 			//numeric types in binary are coded like this
 			byte[] buf = null;
 			if (type == IsoType.NUMERIC) {
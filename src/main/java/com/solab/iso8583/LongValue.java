@@ -0,0 +1,102 @@
+/*
+j8583 A Java implementation of the ISO8583 protocol
+Copyright (C) 2007 Enrique Zamudio Lopez
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+*/
+package com.solab.iso8583;
+
+import com.solab.iso8583.util.Digits;
+import com.solab.iso8583.util.EncodedLength;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+
+/** A NUMERIC or AMOUNT value stored as a primitive long, so that it can be parsed and written
+ * without creating any strings, boxed numbers or BigDecimals. Amounts are stored in minor units,
+ * that is, the 12 digits of the field as they are: 1000 is 10.00.
+ * getValue() returns a Long for NUMERIC values and a BigDecimal with 2 decimals for AMOUNT values,
+ * like the ones created by the usual parsers, but it creates a new object every time;
+ * use getLong() instead.
+ */
+public class LongValue extends IsoValue<Number> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long value;
+
+	/** Creates a new value of the specified type.
+	 * @param t NUMERIC or AMOUNT.
+	 * @param value The number, or the amount in minor units. It can't be negative.
+	 * @param len The number of digits; it's always 12 for AMOUNT. */
+	public LongValue(IsoType t, long value, int len) {
+		super(t, null, t == IsoType.AMOUNT ? 12 : len, null);
+		if (t != IsoType.NUMERIC && t != IsoType.AMOUNT) {
+			throw new IllegalArgumentException("LongValue can only be NUMERIC or AMOUNT, not " + t);
+		}
+		if (!Digits.fits(value, getLength())) {
+			throw new IllegalArgumentException(String.format(
+					"Value %d doesn't fit in %s of length %d", value, t, getLength()));
+		}
+		this.value = value;
+	}
+
+	/** Creates an AMOUNT value with the specified minor units. */
+	public static LongValue amount(long minorUnits) {
+		return new LongValue(IsoType.AMOUNT, minorUnits, 12);
+	}
+
+	/** Returns the number, or the amount in minor units. */
+	public long getLong() {
+		return value;
+	}
+
+	@Override
+	public Number getValue() {
+		return getType() == IsoType.AMOUNT ? BigDecimal.valueOf(value, 2) : Long.valueOf(value);
+	}
+
+	@Override
+	public String toString() {
+		return Digits.format(value, getLength());
+	}
+
+	@Override
+	public int hashCode() {
+		return toString().hashCode();
+	}
+
+	@Override
+	public int encodedLength(final boolean binary, final boolean forceStringEncoding) {
+		if (getBinaryValue() != null ? getBinaryValue() : binary) {
+			return (getLength() + 1) / 2;
+		}
+		return EncodedLength.ascii(getLength(), getCharacterEncoding());
+	}
+
+	@Override
+	public void write(final OutputStream outs, final boolean binary, final boolean forceStringEncoding) throws IOException {
+		if (getBinaryValue() != null ? getBinaryValue() : binary) {
+			Digits.writeBcd(value, getLength(), outs);
+		} else if (EncodedLength.isAsciiCompatible(getCharacterEncoding())) {
+			Digits.writeAscii(value, getLength(), outs);
+		} else {
+			final String s = toString();
+			outs.write(getCharacterEncoding() == null ? s.getBytes() : s.getBytes(getCharacterEncoding()));
+		}
+	}
+
+}
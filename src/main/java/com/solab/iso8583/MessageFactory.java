@@ -20,10 +20,14 @@ package com.solab.iso8583;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
+import java.text.ParsePosition;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.solab.iso8583.parse.DateTimeParseInfo;
+import com.solab.iso8583.util.BitmapCodec;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,11 +59,16 @@ public class MessageFactory<T extends IsoMessage> {
 	protected Map<Integer, Map<Integer, FieldParseInfo>> parseMap = new HashMap<>();
 	/** Stores the field numbers to be parsed, in order of appearance. */
     protected Map<Integer, List<Integer>> parseOrder = new HashMap<>();
+	/** The parsing guides compiled into arrays indexed by field number, one for each message type.
+	 * The array is replaced, never modified, whenever a guide or custom field changes. */
+	private volatile ParsePlan[] parsePlans = new ParsePlan[0];
 
 	private TraceNumberGenerator traceGen;
 	/** The ISO header to be included in each message type. */
 	private Map<Integer, String> isoHeaders = new HashMap<>();
     private Map<Integer, byte[]> binIsoHeaders = new HashMap<>();
+    /** The ISO headers encoded with the factory's encoding, shared by the messages. */
+    private final ConcurrentHashMap<Integer, EncodedHeader> encodedHeaders = new ConcurrentHashMap<>();
 	/** A map for the custom field encoder/decoders, keyed by field number. */
 	@SuppressWarnings("rawtypes")
 	private Map<Integer, CustomField> customFields = new HashMap<>();
@@ -75,6 +84,14 @@ public class MessageFactory<T extends IsoMessage> {
     private boolean binBitmap;
     private boolean forceStringEncoding;
 	private String encoding = System.getProperty("file.encoding");
+	/** Indicates if parsed messages should decode their fields only when they're requested. */
+	private boolean lazyParsing;
+	/** Keep the original bytes of parsed fields, to copy them in responses. */
+	private boolean echoRawFields;
+	/** Parse NUMERIC and AMOUNT fields into LongValues. */
+	private boolean primitiveNumbers;
+	/** Parse text fields into ByteStrings. */
+	private boolean byteStrings;
 
     /** This flag gets passed on to newly created messages and also sets this value for all
      * field parsers in parsing guides. */
@@ -101,6 +118,76 @@ public class MessageFactory<T extends IsoMessage> {
         return binBitmap;
     }
 
+	/** Tells the factory to parse messages lazily: parsing only locates each field in the buffer,
+	 * and a field is decoded the first time it's requested from the message. Fields that are
+	 * never requested are written with their original bytes if the message is encoded again.
+	 * Lazy messages keep a reference to the buffer they were parsed from, so it must not be
+	 * reused or modified while the message is in use. Default is false. */
+	public void setLazyParsing(boolean flag) {
+		lazyParsing = flag;
+	}
+	/** Returns true if the factory parses messages lazily. */
+	public boolean isLazyParsing() {
+		return lazyParsing;
+	}
+
+	/** Tells the factory to keep the location of every field of the messages it parses, so that
+	 * createResponse can copy the original bytes of the request fields into the response instead
+	 * of encoding them again. Only the fields that are set in the request or the response are
+	 * encoded as usual. The request's buffer is referenced by the response, so it must not be
+	 * reused or modified while the response is in use. Default is false. */
+	public void setEchoRawFields(boolean flag) {
+		echoRawFields = flag;
+	}
+	/** Returns true if the factory copies the original bytes of request fields to responses. */
+	public boolean isEchoRawFields() {
+		return echoRawFields;
+	}
+
+	/** Tells the factory to parse NUMERIC fields of up to 18 digits and AMOUNT fields into
+	 * LongValues, which keep the number (or the amount in minor units) as a long, instead of
+	 * strings, Longs and BigDecimals. Fields that contain anything other than digits, or that
+	 * have a custom decoder, are parsed as usual. This flag is set in all the field parsers
+	 * of the parsing guides. Default is false. */
+	public void setPrimitiveNumbers(boolean flag) {
+		primitiveNumbers = flag;
+		for (Map<Integer,FieldParseInfo> pm : parseMap.values()) {
+			for (FieldParseInfo parser : pm.values()) {
+				parser.setPrimitiveNumbers(flag);
+			}
+		}
+	}
+	/** Returns true if the factory parses NUMERIC and AMOUNT fields into LongValues. */
+	public boolean isPrimitiveNumbers() {
+		return primitiveNumbers;
+	}
+
+	/** Tells the factory to parse ALPHA, LLVAR, LLLVAR and LLLLVAR fields into ByteStrings, which
+	 * read their chars from the message buffer instead of copying them into Strings, and are
+	 * written with their original bytes. Fields that have a custom decoder, or whose bytes don't
+	 * decode to one char each in the character encoding, are parsed as usual. The values keep a
+	 * reference to the buffer they were parsed from, so it must not be reused or modified while
+	 * they're in use. This flag is set in all the field parsers of the parsing guides.
+	 * Default is false. */
+	public void setByteStrings(boolean flag) {
+		byteStrings = flag;
+		for (Map<Integer,FieldParseInfo> pm : parseMap.values()) {
+			for (FieldParseInfo parser : pm.values()) {
+				parser.setByteStrings(flag);
+			}
+		}
+	}
+	/** Returns true if the factory parses text fields into ByteStrings. */
+	public boolean isByteStrings() {
+		return byteStrings;
+	}
+
+	/** Returns true if the messages from this factory keep references to the buffer
+	 * they were parsed from. */
+	boolean isBufferReferenced() {
+		return lazyParsing || byteStrings || echoRawFields;
+	}
+
 	/** Sets the character encoding used for parsing ALPHA, LLVAR and LLLVAR fields. */
 	public void setCharacterEncoding(String value) {
         if (encoding == null) {
@@ -117,11 +204,8 @@ public class MessageFactory<T extends IsoMessage> {
         if (!typeTemplates.isEmpty()) {
             for (T tmpl : typeTemplates.values()) {
                 tmpl.setCharacterEncoding(encoding);
-                for (int i = 2 ; i<129; i++) {
-                    IsoValue<?> v = tmpl.getField(i);
-                    if (v != null) {
-                        v.setCharacterEncoding(encoding);
-                    }
+                for (int i = tmpl.nextField(2); i > 0; i = tmpl.nextField(i + 1)) {
+                    tmpl.getField(i).setCharacterEncoding(encoding);
                 }
             }
         }
@@ -160,11 +244,13 @@ public class MessageFactory<T extends IsoMessage> {
 	@SuppressWarnings("rawtypes")
 	public void setCustomFields(Map<Integer, CustomField> value) {
 		customFields = value;
+		compileParsePlans();
 	}
 
 	/** Sets the CustomField encoder for the specified field number. */
 	public void setCustomField(int index, CustomField<?> value) {
 		customFields.put(index, value);
+		compileParsePlans();
 	}
 	/** Returns a custom field encoder/decoder for the specified field number, if one is available. */
 	@SuppressWarnings("unchecked")
@@ -185,6 +271,8 @@ public class MessageFactory<T extends IsoMessage> {
         //Now re-set some properties that need to be propagated down to the recently assigned objects
         setCharacterEncoding(encoding);
         setForceStringEncoding(forceStringEncoding);
+        setPrimitiveNumbers(primitiveNumbers);
+        setByteStrings(byteStrings);
 	}
 
 	/** Tells the receiver to create and parse binary messages if the flag is true.
@@ -226,27 +314,27 @@ public class MessageFactory<T extends IsoMessage> {
         m.setBinaryBitmap(binBitmap);
 		m.setCharacterEncoding(encoding);
         m.setForceStringEncoding(forceStringEncoding);
+        m.setEncodedHeader(getEncodedHeader(type));
 
 		//Copy the values from the template
 		IsoMessage templ = typeTemplates.get(type);
 		if (templ != null) {
-			for (int i = 2; i <= 128; i++) {
-				if (templ.hasField(i)) {
-					//We could detect here if there's a custom object with a CustomField,
-					//but we can't copy the value so there's no point.
-					m.setField(i, templ.getField(i).clone());
-				}
+			for (int i = templ.nextField(2); i > 0; i = templ.nextField(i + 1)) {
+				//We could detect here if there's a custom object with a CustomField,
+				//but we can't copy the value so there's no point.
+				m.setField(i, templ.getField(i).clone());
 			}
 		}
 		if (traceGen != null) {
 			m.setValue(11, traceGen.nextTrace(), IsoType.NUMERIC, 6);
 		}
         if (setDate) {
+            final Date date = new Date(DateTimeParseInfo.getClock().millis());
             if (m.hasField(7)) {
                 //We may have a field with a timezone but no value
-                m.updateValue(7, new Date());
+                m.updateValue(7, date);
             } else {
-                IsoValue<Date> now = new IsoValue<>(IsoType.DATE10, new Date());
+                IsoValue<Date> now = new IsoValue<>(IsoType.DATE10, date);
                 if (DateTimeParseInfo.getDefaultTimeZone() != null) {
                     now.setTimeZone(DateTimeParseInfo.getDefaultTimeZone());
                 }
@@ -268,23 +356,29 @@ public class MessageFactory<T extends IsoMessage> {
 		resp.setType(request.getType() + 16);
 		resp.setEtx(etx);
 		resp.setForceSecondaryBitmap(forceb2);
+		resp.setEncodedHeader(getEncodedHeader(resp.getType()));
 		//Copy the values from the template or the request (request has preference)
 		IsoMessage templ = typeTemplates.get(resp.getType());
-		if (templ == null) {
-			for (int i = 2; i < 128; i++) {
-				if (request.hasField(i)) {
-					resp.setField(i, request.getField(i).clone());
-				}
-			}
-		} else {
-			for (int i = 2; i < 128; i++) {
-				if (request.hasField(i)) {
-					resp.setField(i, request.getField(i).clone());
-				} else if (templ.hasField(i)) {
+		if (templ != null) {
+			for (int i = templ.nextField(2); i > 0 && i < 128; i = templ.nextField(i + 1)) {
+				if (!request.hasField(i)) {
 					resp.setField(i, templ.getField(i).clone());
 				}
 			}
 		}
+		final RawFields original = echoRawFields ? request.getOriginalFields() : null;
+		final RawFields echo = original == null ? null : original.newEmpty();
+		for (int i = request.nextField(2); i > 0 && i < 128; i = request.nextField(i + 1)) {
+			if (echo != null && original.has(i)) {
+				//Decoded only if requested from the response
+				echo.put(i, original);
+			} else {
+				resp.setField(i, request.getField(i).clone());
+			}
+		}
+		if (echo != null && !echo.isEmpty()) {
+			resp.setRawFields(echo);
+		}
 		return resp;
 	}
 
@@ -317,225 +411,442 @@ public class MessageFactory<T extends IsoMessage> {
 	 * @param buf The byte buffer containing the message. Must not include the length header.
 	 * @param isoHeaderLength The expected length of the ISO header, after which the message type
 	 * and the rest of the message must come. */
-	@SuppressFBWarnings
 	public T parseMessage(byte[] buf, int isoHeaderLength, boolean binaryIsoHeader)
         	throws ParseException, UnsupportedEncodingException {
+		return parseMessage(buf, 0, buf.length, isoHeaderLength, binaryIsoHeader);
+	}
+
+    /** Convenience for parseMessage(buf, isoHeaderLength, false) */
+    public T parseMessage(ByteBuffer buf, int isoHeaderLength)
+            throws ParseException, UnsupportedEncodingException {
+        return parseMessage(buf, isoHeaderLength, false);
+    }
+
+    /** Creates a new message instance from the remaining bytes of the buffer, that is, the
+     * bytes between its position and its limit, which must contain exactly one ISO8583 message.
+     * Heap buffers are parsed in place, without copying their contents; direct buffers are
+     * copied once to a byte array since the field parsers work on arrays. The buffer's
+     * position and limit are not modified.
+     * @param buf The buffer containing the message. Must not include the length header.
+     * @param isoHeaderLength The expected length of the ISO header, after which the message type
+     * and the rest of the message must come. */
+    public T parseMessage(ByteBuffer buf, int isoHeaderLength, boolean binaryIsoHeader)
+            throws ParseException, UnsupportedEncodingException {
+        if (buf.hasArray()) {
+            return parseMessage(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining(),
+                    isoHeaderLength, binaryIsoHeader);
+        }
+        final byte[] data = new byte[buf.remaining()];
+        buf.duplicate().get(data);
+        return parseMessage(data, 0, data.length, isoHeaderLength, binaryIsoHeader);
+    }
+
+	/** Creates a new message instance from a region of the buffer, which must contain a valid
+	 * ISO8583 message. The message is parsed in place, so a frame read into a larger buffer
+	 * doesn't need to be copied to its own array first; no data is read outside the region.
+	 * @param buf The byte buffer containing the message.
+	 * @param offset The position in the buffer where the message starts (after the length header).
+	 * @param length The length of the message, including the ISO header but not the length header.
+	 * @param isoHeaderLength The expected length of the ISO header, after which the message type
+	 * and the rest of the message must come. */
+	public T parseMessage(byte[] buf, int offset, int length, int isoHeaderLength, boolean binaryIsoHeader)
+        	throws ParseException, UnsupportedEncodingException {
+		return parseMessage(buf, offset, length, isoHeaderLength, binaryIsoHeader, null);
+	}
+
+	/** Convenience for parseMessage(buf, 0, buf.length, isoHeaderLength, false, fields) */
+	public T parseMessage(byte[] buf, int isoHeaderLength, FieldMask fields)
+			throws ParseException, UnsupportedEncodingException {
+		return parseMessage(buf, 0, buf.length, isoHeaderLength, false, fields);
+	}
+
+	/** Creates a new message instance from a region of the buffer, decoding only the specified
+	 * fields. The other fields are skipped over by their length, without creating any values,
+	 * so they still need to be in the parsing guide, but they're not in the resulting message.
+	 * Parsing stops after the last field in the mask.
+	 * @param buf The byte buffer containing the message.
+	 * @param offset The position in the buffer where the message starts (after the length header).
+	 * @param length The length of the message, including the ISO header but not the length header.
+	 * @param isoHeaderLength The expected length of the ISO header, after which the message type
+	 * and the rest of the message must come.
+	 * @param fields The fields to decode, or null to decode all of them. */
+	@SuppressFBWarnings
+	public T parseMessage(byte[] buf, int offset, int length, int isoHeaderLength, boolean binaryIsoHeader,
+						  FieldMask fields) throws ParseException, UnsupportedEncodingException {
+		final ParseResult<T> result = tryParse(buf, offset, length, isoHeaderLength, binaryIsoHeader,
+				fields, new ParseResult<T>());
+		if (result.isSuccess()) {
+			return result.getMessage();
+		}
+		if (result.getError() == ParseResult.Error.NO_PARSE_GUIDE) {
+			final String msg = String.format("%s [%s]", result.getErrorMessage(), new String(buf, offset, length));
+			log.error(msg);
+			throw new ParseException(msg, 0);
+		} else if (result.getError() == ParseResult.Error.UNKNOWN_FIELD) {
+			log.warn(result.getErrorMessage());
+		}
+		result.throwError();
+		return null;
+	}
+
+	/** Convenience for tryParse(buf, 0, buf.length, isoHeaderLength, false, result) */
+	public ParseResult<T> tryParse(byte[] buf, int isoHeaderLength, ParseResult<T> result) {
+		return tryParse(buf, 0, buf.length, isoHeaderLength, false, result);
+	}
+
+	/** Parses a message like parseMessage does, but reports errors in the result instead of
+	 * throwing exceptions or logging them, so malformed messages can be rejected cheaply.
+	 * Only the errors found when decoding the contents of a field (an invalid date or number,
+	 * or an exception in a custom decoder) still cost an exception internally; with lazy parsing,
+	 * those fields are only decoded later, when requested.
+	 * @param buf The byte buffer containing the message.
+	 * @param offset The position in the buffer where the message starts (after the length header).
+	 * @param length The length of the message, including the ISO header but not the length header.
+	 * @param isoHeaderLength The expected length of the ISO header, after which the message type
+	 * and the rest of the message must come.
+	 * @param result The object where the message or the error are stored; it's reset before parsing.
+	 * @return The result that was passed in. */
+	public ParseResult<T> tryParse(byte[] buf, int offset, int length, int isoHeaderLength,
+								   boolean binaryIsoHeader, ParseResult<T> result) {
+		return tryParse(buf, offset, length, isoHeaderLength, binaryIsoHeader, null, result);
+	}
+
+	/** Parses a message like tryParse does, but decoding only the specified fields,
+	 * as parseMessage does when given a field mask.
+	 * @param fields The fields to decode, or null to decode all of them. */
+	public ParseResult<T> tryParse(byte[] buf, int offset, int length, int isoHeaderLength,
+								   boolean binaryIsoHeader, FieldMask fields, ParseResult<T> result) {
+		if (offset < 0 || length < 0 || offset + length > buf.length) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Invalid region offset %d length %d for buffer of length %d", offset, length, buf.length));
+		}
+		result.reset();
+		try {
+			final T m = parse(buf, offset, length, isoHeaderLength, binaryIsoHeader, fields, result);
+			if (m != null) {
+				result.succeed(m);
+			}
+		} catch (UnsupportedEncodingException ex) {
+			result.fail(ParseResult.Error.INVALID_ENCODING, 0, 0, 0, ex);
+		}
+		return result;
+	}
+
+	/** Parses the message, or records the error in the result and returns null. */
+	private T parse(byte[] buf, int offset, int length, int isoHeaderLength, boolean binaryIsoHeader,
+					FieldMask fields, ParseResult<T> result) throws UnsupportedEncodingException {
 		final int minlength = isoHeaderLength+(useBinary?2:4)+(binBitmap||useBinary ? 8:16);
-		if (buf.length < minlength) {
-			throw new ParseException("Insufficient buffer length, needs to be at least " + minlength, 0);
+		if (length < minlength) {
+			result.fail(ParseResult.Error.INSUFFICIENT_DATA, 0, 0, offset + length, null);
+			return null;
 		}
-		final T m;
-        if (binaryIsoHeader && isoHeaderLength > 0) {
-            byte[] _bih = new byte[isoHeaderLength];
-            System.arraycopy(buf, 0, _bih, 0, isoHeaderLength);
-            m = createIsoMessageWithBinaryHeader(_bih);
-        } else {
-            m = createIsoMessage(isoHeaderLength > 0 ?
-    				new String(buf, 0, isoHeaderLength, encoding) : null);
-        }
-		m.setCharacterEncoding(encoding);
+		final int limit = offset + length;
+		final int typeStart = offset + isoHeaderLength;
 		final int type;
-		if (useBinary) {
-			type = ((buf[isoHeaderLength] & 0xff) << 8) | (buf[isoHeaderLength + 1] & 0xff);
-        } else if (forceStringEncoding) {
-            type = Integer.parseInt(new String(buf, isoHeaderLength, 4, encoding), 16);
-		} else {
-			type = ((buf[isoHeaderLength] - 48) << 12)
-					| ((buf[isoHeaderLength + 1] - 48) << 8)
-                    | ((buf[isoHeaderLength + 2] - 48) << 4)
-                    | (buf[isoHeaderLength + 3] - 48);
+		try {
+			type = decodeType(buf, typeStart);
+		} catch (NumberFormatException ex) {
+			result.fail(ParseResult.Error.INVALID_TYPE, 0, 0, typeStart, null);
+			return null;
 		}
-		m.setType(type);
 		//Parse the bitmap (primary first)
-		final BitSet bs = new BitSet(64);
-		int pos = 0;
+		final int bitmapStart = typeStart + (useBinary ? 2 : 4);
+		final long primary;
+		long secondary = 0;
+		final int pos;
 		if (useBinary || binBitmap) {
-            final int bitmapStart = isoHeaderLength + (useBinary ? 2 : 4);
-			for (int i = bitmapStart; i < 8+bitmapStart; i++) {
-				int bit = 128;
-				for (int b = 0; b < 8; b++) {
-					bs.set(pos++, (buf[i] & bit) != 0);
-					bit >>= 1;
-				}
-			}
+			primary = BitmapCodec.decodeBinary(buf, bitmapStart);
 			//Check for secondary bitmap and parse if necessary
-			if (bs.get(0)) {
-				if (buf.length < minlength + 8) {
-					throw new ParseException("Insufficient length for secondary bitmap", minlength);
-				}
-				for (int i = 8+bitmapStart; i < 16+bitmapStart; i++) {
-					int bit = 128;
-					for (int b = 0; b < 8; b++) {
-						bs.set(pos++, (buf[i] & bit) != 0);
-						bit >>= 1;
-					}
+			if (primary < 0) {
+				if (length < minlength + 8) {
+					result.fail(ParseResult.Error.INSUFFICIENT_DATA, type, 0, limit, null);
+					return null;
 				}
-				pos = minlength + 8;
+				secondary = BitmapCodec.decodeBinary(buf, bitmapStart + 8);
+				pos = offset + minlength + 8;
 			} else {
-				pos = minlength;
+				pos = offset + minlength;
 			}
 		} else {
 			//ASCII parsing
-			try {
-                final byte[] bitmapBuffer;
-                if (forceStringEncoding) {
-                    byte[] _bb = new String(buf, isoHeaderLength+4, 16, encoding).getBytes();
-                    bitmapBuffer = new byte[36+isoHeaderLength];
-                    System.arraycopy(_bb, 0, bitmapBuffer, 4+isoHeaderLength, 16);
-                } else {
-                    bitmapBuffer = buf;
-                }
-                for (int i = isoHeaderLength + 4; i < isoHeaderLength + 20; i++) {
-                    if (bitmapBuffer[i] >= '0' && bitmapBuffer[i] <= '9') {
-                        bs.set(pos++, ((bitmapBuffer[i] - 48) & 8) > 0);
-                        bs.set(pos++, ((bitmapBuffer[i] - 48) & 4) > 0);
-                        bs.set(pos++, ((bitmapBuffer[i] - 48) & 2) > 0);
-                        bs.set(pos++, ((bitmapBuffer[i] - 48) & 1) > 0);
-                    } else if (bitmapBuffer[i] >= 'A' && bitmapBuffer[i] <= 'F') {
-                        bs.set(pos++, ((bitmapBuffer[i] - 55) & 8) > 0);
-                        bs.set(pos++, ((bitmapBuffer[i] - 55) & 4) > 0);
-                        bs.set(pos++, ((bitmapBuffer[i] - 55) & 2) > 0);
-                        bs.set(pos++, ((bitmapBuffer[i] - 55) & 1) > 0);
-                    } else if (bitmapBuffer[i] >= 'a' && bitmapBuffer[i] <= 'f') {
-                        bs.set(pos++, ((bitmapBuffer[i] - 87) & 8) > 0);
-                        bs.set(pos++, ((bitmapBuffer[i] - 87) & 4) > 0);
-                        bs.set(pos++, ((bitmapBuffer[i] - 87) & 2) > 0);
-                        bs.set(pos++, ((bitmapBuffer[i] - 87) & 1) > 0);
-                    }
-                }
-				//Check for secondary bitmap and parse it if necessary
-				if (bs.get(0)) {
-					if (buf.length < minlength + 16) {
-						throw new ParseException("Insufficient length for secondary bitmap", minlength);
-					}
-                    if (forceStringEncoding) {
-                        byte[] _bb = new String(buf, isoHeaderLength+20, 16, encoding).getBytes();
-                        System.arraycopy(_bb, 0, bitmapBuffer, 20+isoHeaderLength, 16);
-                    }
-					for (int i = isoHeaderLength + 20; i < isoHeaderLength + 36; i++) {
-						if (bitmapBuffer[i] >= '0' && bitmapBuffer[i] <= '9') {
-							bs.set(pos++, ((bitmapBuffer[i] - 48) & 8) > 0);
-							bs.set(pos++, ((bitmapBuffer[i] - 48) & 4) > 0);
-							bs.set(pos++, ((bitmapBuffer[i] - 48) & 2) > 0);
-							bs.set(pos++, ((bitmapBuffer[i] - 48) & 1) > 0);
-						} else if (bitmapBuffer[i] >= 'A' && bitmapBuffer[i] <= 'F') {
-							bs.set(pos++, ((bitmapBuffer[i] - 55) & 8) > 0);
-							bs.set(pos++, ((bitmapBuffer[i] - 55) & 4) > 0);
-							bs.set(pos++, ((bitmapBuffer[i] - 55) & 2) > 0);
-							bs.set(pos++, ((bitmapBuffer[i] - 55) & 1) > 0);
-						} else if (bitmapBuffer[i] >= 'a' && bitmapBuffer[i] <= 'f') {
-							bs.set(pos++, ((bitmapBuffer[i] - 87) & 8) > 0);
-							bs.set(pos++, ((bitmapBuffer[i] - 87) & 4) > 0);
-							bs.set(pos++, ((bitmapBuffer[i] - 87) & 2) > 0);
-							bs.set(pos++, ((bitmapBuffer[i] - 87) & 1) > 0);
-						}
-					}
-					pos = 16 + minlength;
-				} else {
-					pos = minlength;
+			final String primaryChars = forceStringEncoding ? new String(buf, bitmapStart, 16, encoding) : null;
+			if (primaryChars == null ? !BitmapCodec.isHex(buf, bitmapStart) : !BitmapCodec.isHex(primaryChars, 0)) {
+				result.fail(ParseResult.Error.INVALID_BITMAP, type, 0, bitmapStart, null);
+				return null;
+			}
+			primary = primaryChars == null ? BitmapCodec.decodeHex(buf, bitmapStart)
+					: BitmapCodec.decodeHex(primaryChars, 0);
+			//Check for secondary bitmap and parse it if necessary
+			if (primary < 0) {
+				if (length < minlength + 16) {
+					result.fail(ParseResult.Error.INSUFFICIENT_DATA, type, 0, limit, null);
+					return null;
+				}
+				final String secondaryChars = forceStringEncoding
+						? new String(buf, bitmapStart + 16, 16, encoding) : null;
+				if (secondaryChars == null ? !BitmapCodec.isHex(buf, bitmapStart + 16)
+						: !BitmapCodec.isHex(secondaryChars, 0)) {
+					result.fail(ParseResult.Error.INVALID_BITMAP, type, 0, bitmapStart + 16, null);
+					return null;
 				}
-			} catch (NumberFormatException ex) {
-				ParseException _e = new ParseException("Invalid ISO8583 bitmap", pos);
-				_e.initCause(ex);
-				throw _e;
+				secondary = secondaryChars == null ? BitmapCodec.decodeHex(buf, bitmapStart + 16)
+						: BitmapCodec.decodeHex(secondaryChars, 0);
+				pos = offset + 16 + minlength;
+			} else {
+				pos = offset + minlength;
 			}
 		}
-		//Parse each field
-		Map<Integer, FieldParseInfo> parseGuide = parseMap.get(type);
-		List<Integer> index = parseOrder.get(type);
-		if (index == null) {
-			log.error(String.format("ISO8583 MessageFactory has no parsing guide for message type %04x [%s]",
-				type, new String(buf)));
-			throw new ParseException(String.format(
-					"ISO8583 MessageFactory has no parsing guide for message type %04x [%s]",
-					type,
-					new String(buf)), 0);
+		final ParsePlan plan = getParsePlan(type);
+		if (plan == null) {
+			result.fail(ParseResult.Error.NO_PARSE_GUIDE, type, 0, typeStart, null);
+			return null;
 		}
 		//First we check if the message contains fields not specified in the parsing template
-		boolean abandon = false;
-		for (int i = 1; i < bs.length(); i++) {
-			if (bs.get(i) && !index.contains(i+1)) {
-                log.warn("ISO8583 MessageFactory cannot parse field {}: unspecified in parsing guide for type {}",
-                        i+1, Integer.toString(type, 16));
-				abandon = true;
-			}
-		}
-		if (abandon) {
-			throw new ParseException("ISO8583 MessageFactory cannot parse fields", 0);
+		final long unknown1 = primary & ~plan.getPrimaryMask() & Long.MAX_VALUE;
+		final long unknown2 = secondary & ~plan.getSecondaryMask();
+		if ((unknown1 | unknown2) != 0) {
+			result.fail(ParseResult.Error.UNKNOWN_FIELD, type, BitmapCodec.nextField(unknown1, unknown2, 2),
+					bitmapStart, null);
+			return null;
 		}
+		final T m;
+        if (binaryIsoHeader && isoHeaderLength > 0) {
+            byte[] _bih = new byte[isoHeaderLength];
+            System.arraycopy(buf, offset, _bih, 0, isoHeaderLength);
+            m = createIsoMessageWithBinaryHeader(_bih);
+        } else {
+            m = createIsoMessage(isoHeaderLength > 0 ?
+    				new String(buf, offset, isoHeaderLength, encoding) : null);
+        }
+		m.setCharacterEncoding(encoding);
+		m.setType(type);
 		//Now we parse each field
-		for (Integer i : index) {
-			FieldParseInfo fpi = parseGuide.get(i);
-			if (bs.get(i - 1)) {
-				if (ignoreLast && pos >= buf.length && i.intValue() == index.get(index.size() -1)) {
-					log.warn("Field {} is not really in the message even though it's in the bitmap", i);
-					bs.clear(i - 1);
-				} else {
-					CustomField<?> decoder = fpi.getDecoder();
-					if (decoder == null) {
-						decoder = getCustomField(i);
-					}
-
-					final boolean binaryLength = fpi.isBinaryLength(useBinary);
-					final boolean binaryValue = fpi.isBinaryValue(useBinary);
-					final IsoValue<?> val;
-
-					if (binaryValue) {
-						val = fpi.parseBinary(i, buf, pos, decoder, binaryLength);
-					} else {
-						val = fpi.parse(i, buf, pos, decoder, binaryLength);
-					}
-					m.setField(i, val);
-
-					if (val != null) {
-						val.setBinaryLength(fpi.getBinaryLength());
-						val.setBinaryValue(fpi.getBinaryValue());
-
-						if (binaryValue) {
-							if (val.getType() == IsoType.NUMERIC || val.getType() == IsoType.DATE10
-									|| val.getType() == IsoType.DATE4
-									|| val.getType() == IsoType.DATE12
-									|| val.getType() == IsoType.DATE14
-									|| val.getType() == IsoType.DATE_EXP
-									|| val.getType() == IsoType.AMOUNT
-									|| val.getType() == IsoType.TIME) {
-								pos += (val.getLength() / 2) + (val.getLength() % 2);
-							} else {
-								pos += val.getLength();
-							}
-						} else {
-							//To get the correct next position, we need to get the number of bytes, not chars
-							pos += val.toString().getBytes(fpi.getCharacterEncoding()).length;
-
-						}
-
-						if (binaryLength) {
-							if (val.getType() == IsoType.LLVAR || val.getType() == IsoType.LLBIN || val.getType() == IsoType.LLNUM) {
-								pos++;
-							} else if (val.getType() == IsoType.LLLVAR
-									|| val.getType() == IsoType.LLLBIN
-									|| val.getType() == IsoType.LLLLVAR
-									|| val.getType() == IsoType.LLLLBIN) {
-								pos += 2;
-							}
-						} else {
-							if (val.getType() == IsoType.LLVAR || val.getType() == IsoType.LLBIN) {
-								pos += 2;
-							} else if (val.getType() == IsoType.LLLVAR || val.getType() == IsoType.LLLBIN) {
-								pos += 3;
-							} else if (val.getType() == IsoType.LLLLVAR || val.getType() == IsoType.LLLLBIN) {
-								pos += 4;
-							}
-						}
-					}
-				}
+		final RawFields raw = lazyParsing ? new RawFields(buf, useBinary, forceStringEncoding, encoding) : null;
+		final RawFields original = echoRawFields
+				? new RawFields(buf, useBinary, forceStringEncoding, encoding) : null;
+		final int lastField = plan.getLastField();
+		final int lastWanted = fields == null ? 128 : fields.getLastField();
+		final ParsePosition cursor = new ParsePosition(pos);
+		for (int i = BitmapCodec.nextField(primary, secondary, 2); i > 0;
+				i = BitmapCodec.nextField(primary, secondary, i + 1)) {
+			if (i > lastWanted) {
+				break;
+			}
+			if (ignoreLast && cursor.getIndex() >= limit && i == lastField) {
+				log.warn("Field {} is not really in the message even though it's in the bitmap", i);
+				continue;
+			}
+			final FieldParseInfo fpi = plan.getParser(i);
+			final CustomField<?> decoder = plan.getDecoder(i);
+			final boolean binaryLength = fpi.isBinaryLength(useBinary);
+			final boolean binaryValue = fpi.isBinaryValue(useBinary);
+			final int fpos = cursor.getIndex();
+			final int flen = fpi.measureField(buf, fpos, limit, binaryValue, binaryLength);
+			if (flen < 0) {
+				result.fail(ParseResult.Error.INSUFFICIENT_DATA, type, i, fpos, null);
+				return null;
+			}
+			cursor.setIndex(fpos + flen);
+			if (fields != null && !fields.contains(i)) {
+				continue;
 			}
+			if (original != null) {
+				original.put(i, fpi, decoder, fpos, flen);
+			}
+			if (raw != null) {
+				//It will be decoded when needed
+				raw.put(i, fpi, decoder, fpos, flen);
+				continue;
+			}
+			final IsoValue<?> val;
+			try {
+				val = binaryValue ? fpi.parseBinary(i, buf, fpos, fpos + flen, decoder, binaryLength)
+						: fpi.parse(i, buf, fpos, fpos + flen, decoder, binaryLength);
+			} catch (ParseException | RuntimeException ex) {
+				result.fail(ParseResult.Error.INVALID_FIELD, type, i, fpos, ex);
+				return null;
+			}
+			m.setField(i, val);
+			if (val != null) {
+				val.setBinaryLength(fpi.getBinaryLength());
+				val.setBinaryValue(fpi.getBinaryValue());
+			}
+		}
+		if (raw != null && !raw.isEmpty()) {
+			m.setRawFields(raw);
+		}
+		if (original != null && !original.isEmpty()) {
+			m.setOriginalFields(original);
 		}
 		m.setBinary(useBinary);
         m.setBinaryBitmap(binBitmap);
 		return m;
 	}
 
+	/** Decodes the message type at the specified position.
+	 * @throws NumberFormatException if the type is not a hex number, when forcing string encoding. */
+	private int decodeType(byte[] buf, int typeStart) throws UnsupportedEncodingException {
+		if (useBinary) {
+			return ((buf[typeStart] & 0xff) << 8) | (buf[typeStart + 1] & 0xff);
+		} else if (forceStringEncoding) {
+			return Integer.parseInt(new String(buf, typeStart, 4, encoding), 16);
+		}
+		return ((buf[typeStart] - 48) << 12)
+				| ((buf[typeStart + 1] - 48) << 8)
+				| ((buf[typeStart + 2] - 48) << 4)
+				| (buf[typeStart + 3] - 48);
+	}
+
+	/** Returns the type of the message in the buffer, without parsing the rest of it.
+	 * @param buf The byte buffer containing the message. Must not include the length header.
+	 * @param isoHeaderLength The expected length of the ISO header, after which the message type
+	 * and the rest of the message must come. */
+	public int peekType(byte[] buf, int isoHeaderLength) throws ParseException, UnsupportedEncodingException {
+		if (buf.length < isoHeaderLength + (useBinary ? 2 : 4)) {
+			throw new ParseException("Insufficient buffer length for message type", isoHeaderLength);
+		}
+		try {
+			return decodeType(buf, isoHeaderLength);
+		} catch (NumberFormatException ex) {
+			ParseException _e = new ParseException("Invalid ISO8583 message type", isoHeaderLength);
+			_e.initCause(ex);
+			throw _e;
+		}
+	}
+
+	/** Returns the bitmap of the message in the buffer, without parsing the fields.
+	 * @param buf The byte buffer containing the message. Must not include the length header.
+	 * @param isoHeaderLength The expected length of the ISO header, after which the message type
+	 * and the rest of the message must come.
+	 * @return An array with the primary and secondary bitmaps (the latter is 0 if it's not present),
+	 * where the most significant bits are fields 1 and 65 respectively. */
+	public long[] peekBitmap(byte[] buf, int isoHeaderLength) throws ParseException, UnsupportedEncodingException {
+		final long[] bitmap = new long[2];
+		readBitmap(buf, isoHeaderLength, bitmap);
+		return bitmap;
+	}
+
+	/** Decodes just one field of the message in the buffer, without creating the message or
+	 * decoding any other fields; the fields before it are only measured to find where it starts.
+	 * @param buf The byte buffer containing the message. Must not include the length header.
+	 * @param isoHeaderLength The expected length of the ISO header, after which the message type
+	 * and the rest of the message must come.
+	 * @param field The field number, from 2 to 128.
+	 * @return The value of the field, or null if the field is not in the message. */
+	public IsoValue<?> peekField(byte[] buf, int isoHeaderLength, int field)
+			throws ParseException, UnsupportedEncodingException {
+		final ParsePlan plan = getPeekPlan(buf, isoHeaderLength);
+		final int pos = locateField(buf, isoHeaderLength, plan, field);
+		if (pos < 0) {
+			return null;
+		}
+		final FieldParseInfo fpi = plan.getParser(field);
+		final boolean binaryLength = fpi.isBinaryLength(useBinary);
+		final boolean binaryValue = fpi.isBinaryValue(useBinary);
+		final int end = pos + fpi.getFieldLength(field, buf, pos, buf.length, binaryValue, binaryLength);
+		final IsoValue<?> val = binaryValue
+				? fpi.parseBinary(field, buf, pos, end, plan.getDecoder(field), binaryLength)
+				: fpi.parse(field, buf, pos, end, plan.getDecoder(field), binaryLength);
+		if (val != null) {
+			val.setBinaryLength(fpi.getBinaryLength());
+			val.setBinaryValue(fpi.getBinaryValue());
+		}
+		return val;
+	}
+
+	/** Returns a copy of the encoded data of one field of the message in the buffer, without its
+	 * length header, and without decoding the message or any of its fields.
+	 * @param buf The byte buffer containing the message. Must not include the length header.
+	 * @param isoHeaderLength The expected length of the ISO header, after which the message type
+	 * and the rest of the message must come.
+	 * @param field The field number, from 2 to 128.
+	 * @return The bytes of the field, or null if the field is not in the message. */
+	public byte[] peekFieldBytes(byte[] buf, int isoHeaderLength, int field)
+			throws ParseException, UnsupportedEncodingException {
+		final ParsePlan plan = getPeekPlan(buf, isoHeaderLength);
+		final int pos = locateField(buf, isoHeaderLength, plan, field);
+		if (pos < 0) {
+			return null;
+		}
+		final FieldParseInfo fpi = plan.getParser(field);
+		final boolean binaryLength = fpi.isBinaryLength(useBinary);
+		final int flen = fpi.getFieldLength(field, buf, pos, buf.length, fpi.isBinaryValue(useBinary), binaryLength);
+		return Arrays.copyOfRange(buf, pos + fpi.getLengthHeaderSize(binaryLength), pos + flen);
+	}
+
+	/** Returns the parsing guide for the type of the message in the buffer. */
+	private ParsePlan getPeekPlan(byte[] buf, int isoHeaderLength) throws ParseException, UnsupportedEncodingException {
+		final int type = peekType(buf, isoHeaderLength);
+		final ParsePlan plan = getParsePlan(type);
+		if (plan == null) {
+			throw new ParseException(String.format(
+					"ISO8583 MessageFactory has no parsing guide for message type %04x", type), isoHeaderLength);
+		}
+		return plan;
+	}
+
+	/** Returns the position of the field in the buffer, or -1 if it's not in the message.
+	 * Only the fields before it need to be in the parsing guide. */
+	private int locateField(byte[] buf, int isoHeaderLength, ParsePlan plan, int field)
+			throws ParseException, UnsupportedEncodingException {
+		if (field < 2 || field > 128) {
+			throw new IndexOutOfBoundsException("Field index must be between 2 and 128");
+		}
+		final long[] bitmap = new long[2];
+		int pos = readBitmap(buf, isoHeaderLength, bitmap);
+		if (((field <= 64 ? bitmap[0] : bitmap[1]) & BitmapCodec.bit(field)) == 0) {
+			return -1;
+		}
+		for (int i = BitmapCodec.nextField(bitmap[0], bitmap[1], 2); i <= field;
+				i = BitmapCodec.nextField(bitmap[0], bitmap[1], i + 1)) {
+			final FieldParseInfo fpi = plan.getParser(i);
+			if (fpi == null) {
+				throw new ParseException(String.format(
+						"ISO8583 MessageFactory cannot parse field %d: unspecified in parsing guide for type %04x",
+						i, plan.getType()), pos);
+			}
+			if (i == field) {
+				break;
+			}
+			pos += fpi.getFieldLength(i, buf, pos, buf.length, fpi.isBinaryValue(useBinary), fpi.isBinaryLength(useBinary));
+		}
+		return pos;
+	}
+
+	/** Reads the bitmap into the array (primary and secondary) and returns the position of the first field. */
+	private int readBitmap(byte[] buf, int isoHeaderLength, long[] bitmap)
+			throws ParseException, UnsupportedEncodingException {
+		final int bitmapStart = isoHeaderLength + (useBinary ? 2 : 4);
+		final int size = useBinary || binBitmap ? 8 : 16;
+		if (buf.length < bitmapStart + size) {
+			throw new ParseException("Insufficient buffer length for bitmap", bitmapStart);
+		}
+		bitmap[0] = readBitmapWord(buf, bitmapStart);
+		if (bitmap[0] >= 0) {
+			bitmap[1] = 0;
+			return bitmapStart + size;
+		}
+		if (buf.length < bitmapStart + size * 2) {
+			throw new ParseException("Insufficient length for secondary bitmap", bitmapStart + size);
+		}
+		bitmap[1] = readBitmapWord(buf, bitmapStart + size);
+		return bitmapStart + size * 2;
+	}
+
+	private long readBitmapWord(byte[] buf, int pos) throws ParseException, UnsupportedEncodingException {
+		if (useBinary || binBitmap) {
+			return BitmapCodec.decodeBinary(buf, pos);
+		} else if (forceStringEncoding) {
+			final String chars = new String(buf, pos, 16, encoding);
+			if (BitmapCodec.isHex(chars, 0)) {
+				return BitmapCodec.decodeHex(chars, 0);
+			}
+		} else if (BitmapCodec.isHex(buf, pos)) {
+			return BitmapCodec.decodeHex(buf, pos);
+		}
+		throw new ParseException("Invalid ISO8583 bitmap", pos);
+	}
+
 	/** Creates a Iso message, override this method in the subclass to provide your 
 	 * own implementations of IsoMessage.
 	 * @param header The optional ISO header that goes before the message type
@@ -558,7 +869,7 @@ public class MessageFactory<T extends IsoMessage> {
     }
 
     /** Sets whether the factory should set the current date on newly created messages,
-	 * in field 7. Default is false. */
+	 * in field 7. The date is taken from DateTimeParseInfo.getClock(). Default is false. */
 	public void setAssignDate(boolean flag) {
 		setDate = flag;
 	}
@@ -598,6 +909,31 @@ public class MessageFactory<T extends IsoMessage> {
 		}
 	}
 
+	/** Returns the ISO header for the specified type, encoded with the factory's encoding,
+	 * or null if there's none. The headers are encoded only once and shared by the messages;
+	 * a message only uses them while it keeps the same header and encoding. */
+	EncodedHeader getEncodedHeader(int type) {
+		final byte[] bin = binIsoHeaders.get(type);
+		final String header = bin == null ? isoHeaders.get(type) : null;
+		if (bin == null && header == null) {
+			return null;
+		}
+		EncodedHeader enc = encodedHeaders.get(type);
+		if (enc == null || !(bin == null ? enc.isFor(header, encoding) : enc.isFor(bin))) {
+			if (bin != null) {
+				enc = EncodedHeader.of(bin);
+			} else {
+				try {
+					enc = EncodedHeader.of(header, encoding);
+				} catch (UnsupportedEncodingException ex) {
+					return null;
+				}
+			}
+			encodedHeaders.put(type, enc);
+		}
+		return enc;
+	}
+
 	/** Returns the ISO header used for the specified type. */
 	public String getIsoHeader(int type) {
 		return isoHeaders.get(type);
@@ -638,9 +974,32 @@ public class MessageFactory<T extends IsoMessage> {
 		return typeTemplates.get(type);
 	}
 
+	/** Encodes the fields of the message templates, in text and binary format, as well as the
+	 * ISO headers, so that new messages write them by copying their bytes instead of formatting
+	 * them again every time. Fields that the application sets in a message are encoded as usual.
+	 * The values in the templates must not be modified after this; replacing them is fine.
+	 * This is done by freeze(). */
+	public void encodeTemplates() {
+		for (T tmpl : typeTemplates.values()) {
+			for (int i = tmpl.nextField(2); i > 0; i = tmpl.nextField(i + 1)) {
+				//new messages set the factory's encoding in the fields anyway
+				tmpl.getField(i).setCharacterEncoding(encoding);
+				tmpl.getField(i).preEncode(forceStringEncoding);
+			}
+		}
+		for (Integer type : isoHeaders.keySet()) {
+			getEncodedHeader(type);
+		}
+		for (Integer type : binIsoHeaders.keySet()) {
+			getEncodedHeader(type);
+		}
+	}
+
 	/** Invoke this method in case you want to freeze the configuration, making message and parsing
 	 * templates, as well as iso headers and custom fields, immutable. */
 	public void freeze() {
+		compileParsePlans();
+		encodeTemplates();
 		typeTemplates = Collections.unmodifiableMap(typeTemplates);
 		parseMap = Collections.unmodifiableMap(parseMap);
 		parseOrder = Collections.unmodifiableMap(parseOrder);
@@ -655,6 +1014,17 @@ public class MessageFactory<T extends IsoMessage> {
 	 * @param map A map of FieldParseInfo instances, each of which define what type and length
 	 * of field to expect. The keys will be the field numbers. */
 	public void setParseMap(int type, Map<Integer, FieldParseInfo> map) {
+		final ParsePlan plan = new ParsePlan(type, map, customFields);
+		if (primitiveNumbers) {
+			for (FieldParseInfo parser : map.values()) {
+				parser.setPrimitiveNumbers(true);
+			}
+		}
+		if (byteStrings) {
+			for (FieldParseInfo parser : map.values()) {
+				parser.setByteStrings(true);
+			}
+		}
 		parseMap.put(type, map);
 		ArrayList<Integer> index = new ArrayList<>();
 		index.addAll(map.keySet());
@@ -662,6 +1032,50 @@ public class MessageFactory<T extends IsoMessage> {
 		log.trace(String.format("ISO8583 MessageFactory adding parse map for type %04x with fields %s",
 				type, index));
 		parseOrder.put(type, index);
+		addParsePlan(plan);
+	}
+
+	/** Returns the compiled parsing guide for the specified message type, or null if there is
+	 * no guide for it. Guides that were put straight into the parse map are compiled here. */
+	ParsePlan getParsePlan(int type) {
+		for (ParsePlan plan : parsePlans) {
+			if (plan.getType() == type) {
+				return plan;
+			}
+		}
+		final Map<Integer, FieldParseInfo> guide = parseMap.get(type);
+		if (guide == null) {
+			return null;
+		}
+		final ParsePlan plan = new ParsePlan(type, guide, customFields);
+		addParsePlan(plan);
+		return plan;
+	}
+
+	/** Adds the plan to the compiled guides, replacing any previous plan for the same type. */
+	private synchronized void addParsePlan(ParsePlan plan) {
+		final ParsePlan[] old = parsePlans;
+		for (int i = 0; i < old.length; i++) {
+			if (old[i].getType() == plan.getType()) {
+				final ParsePlan[] plans = old.clone();
+				plans[i] = plan;
+				parsePlans = plans;
+				return;
+			}
+		}
+		final ParsePlan[] plans = Arrays.copyOf(old, old.length + 1);
+		plans[old.length] = plan;
+		parsePlans = plans;
+	}
+
+	/** Compiles all the parsing guides again, because something they depend on has changed. */
+	private synchronized void compileParsePlans() {
+		final ParsePlan[] plans = new ParsePlan[parseMap.size()];
+		int i = 0;
+		for (Map.Entry<Integer, Map<Integer, FieldParseInfo>> e : parseMap.entrySet()) {
+			plans[i++] = new ParsePlan(e.getKey(), e.getValue(), customFields);
+		}
+		parsePlans = plans;
 	}
 
 }
@@ -0,0 +1,95 @@
+/*
+j8583 A Java implementation of the ISO8583 protocol
+Copyright (C) 2007 Enrique Zamudio Lopez
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+*/
+package com.solab.iso8583;
+
+import com.solab.iso8583.parse.FieldParseInfo;
+import com.solab.iso8583.util.BitmapCodec;
+
+import java.util.Map;
+
+/** A parsing guide for a message type, compiled into arrays indexed by field number
+ * so that parsing a message doesn't need any map lookups. The mask of allowed fields
+ * uses the same bit order as the bitmap in the message: the most significant bit of
+ * the primary mask is field 1, and the most significant bit of the secondary mask is field 65.
+ */
+final class ParsePlan {
+
+    private final int type;
+    private final FieldParseInfo[] parsers = new FieldParseInfo[129];
+    @SuppressWarnings("rawtypes")
+    private final CustomField[] customFields = new CustomField[129];
+    private final int lastField;
+    private final long primaryMask;
+    private final long secondaryMask;
+
+    @SuppressWarnings("rawtypes")
+    ParsePlan(int type, Map<Integer, FieldParseInfo> guide, Map<Integer, CustomField> custom) {
+        this.type = type;
+        long m1 = 0;
+        long m2 = 0;
+        int last = 0;
+        for (Map.Entry<Integer, FieldParseInfo> e : guide.entrySet()) {
+            final int f = e.getKey();
+            if (f < 2 || f > 128) {
+                throw new IllegalArgumentException(String.format(
+                        "Invalid field %d in parsing guide for type %04x", f, type));
+            }
+            parsers[f] = e.getValue();
+            customFields[f] = custom == null ? null : custom.get(f);
+            last = Math.max(last, f);
+            if (f <= 64) {
+                m1 |= BitmapCodec.bit(f);
+            } else {
+                m2 |= BitmapCodec.bit(f);
+            }
+        }
+        lastField = last;
+        primaryMask = m1;
+        secondaryMask = m2;
+    }
+
+    int getType() {
+        return type;
+    }
+
+    /** Returns the highest field number in the guide, or 0 if it's empty. */
+    int getLastField() {
+        return lastField;
+    }
+
+    FieldParseInfo getParser(int field) {
+        return parsers[field];
+    }
+
+    /** Returns the decoder for a field: the one set in its parser, or else the custom field
+     * that was set in the factory for that field number. */
+    CustomField<?> getDecoder(int field) {
+        final CustomField<?> dec = parsers[field].getDecoder();
+        return dec == null ? customFields[field] : dec;
+    }
+
+    long getPrimaryMask() {
+        return primaryMask;
+    }
+
+    long getSecondaryMask() {
+        return secondaryMask;
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+j8583 A Java implementation of the ISO8583 protocol
+Copyright (C) 2007 Enrique Zamudio Lopez
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+*/
+package com.solab.iso8583;
+
+import java.io.UnsupportedEncodingException;
+import java.text.ParseException;
+
+/** The outcome of {@link MessageFactory#tryParse(byte[], int, int, int, boolean, ParseResult)}:
+ * either the parsed message, or the reason it couldn't be parsed. Nothing is formatted until
+ * the error message is requested, so rejecting malformed messages is cheap. An instance can be
+ * reused for several messages, since it's reset every time it's passed to tryParse.
+ */
+public class ParseResult<T extends IsoMessage> {
+
+    /** The reasons a message can be rejected. */
+    public enum Error {
+        /** The message was parsed successfully. */
+        NONE,
+        /** The buffer ends before the bitmap or a field is complete. */
+        INSUFFICIENT_DATA,
+        /** The message type is not a valid hex number. */
+        INVALID_TYPE,
+        /** The bitmap contains invalid hex digits. */
+        INVALID_BITMAP,
+        /** There is no parsing guide for the message type. */
+        NO_PARSE_GUIDE,
+        /** The bitmap includes a field that is not in the parsing guide. */
+        UNKNOWN_FIELD,
+        /** The data in a field could not be decoded. */
+        INVALID_FIELD,
+        /** The character encoding is not supported. */
+        INVALID_ENCODING
+    }
+
+    private T message;
+    private Error error = Error.NONE;
+    private int type;
+    private int field;
+    private int offset;
+    private Exception cause;
+
+    /** Clears the result so it can be used for another message. */
+    public void reset() {
+        message = null;
+        error = Error.NONE;
+        type = 0;
+        field = 0;
+        offset = 0;
+        cause = null;
+    }
+
+    void succeed(T value) {
+        message = value;
+    }
+
+    /** Records an error; type, field and offset are 0 when they're not known or don't apply. */
+    void fail(Error value, int msgType, int fieldNum, int pos, Exception ex) {
+        message = null;
+        error = value;
+        type = msgType;
+        field = fieldNum;
+        offset = pos;
+        cause = ex;
+    }
+
+    /** Returns true if the message was parsed successfully. */
+    public boolean isSuccess() {
+        return error == Error.NONE;
+    }
+
+    /** Returns the parsed message, or null if it couldn't be parsed. */
+    public T getMessage() {
+        return message;
+    }
+
+    public Error getError() {
+        return error;
+    }
+
+    /** Returns the message type, if it was read before the error. */
+    public int getType() {
+        return type;
+    }
+
+    /** Returns the number of the field that couldn't be parsed, or 0 if the error is not in a field. */
+    public int getField() {
+        return field;
+    }
+
+    /** Returns the position in the buffer where the error was found. */
+    public int getOffset() {
+        return offset;
+    }
+
+    /** Returns the exception thrown by a field parser, if that's what caused the error. */
+    public Exception getCause() {
+        return cause;
+    }
+
+    /** Returns a description of the error, or null if there is no error. */
+    public String getErrorMessage() {
+        switch (error) {
+            case NONE:
+                return null;
+            case INSUFFICIENT_DATA:
+                return field == 0 ? String.format("Insufficient buffer length at pos %d", offset)
+                        : String.format("Insufficient data for field %d, pos %d", field, offset);
+            case INVALID_TYPE:
+                return String.format("Invalid ISO8583 message type at pos %d", offset);
+            case INVALID_BITMAP:
+                return String.format("Invalid ISO8583 bitmap at pos %d", offset);
+            case NO_PARSE_GUIDE:
+                return String.format("ISO8583 MessageFactory has no parsing guide for message type %04x", type);
+            case UNKNOWN_FIELD:
+                return String.format("ISO8583 MessageFactory cannot parse field %d: unspecified in parsing guide for type %04x",
+                        field, type);
+            default:
+                return cause != null ? cause.getMessage()
+                        : String.format("Cannot parse field %d, pos %d", field, offset);
+        }
+    }
+
+    /** Throws the exception that parseMessage would throw for this error. */
+    void throwError() throws ParseException, UnsupportedEncodingException {
+        if (cause instanceof ParseException) {
+            throw (ParseException)cause;
+        } else if (cause instanceof UnsupportedEncodingException) {
+            throw (UnsupportedEncodingException)cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException)cause;
+        }
+        throw new ParseException(getErrorMessage(), offset);
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess() ? "ParseResult[OK]" : "ParseResult[" + getErrorMessage() + "]";
+    }
+
+}
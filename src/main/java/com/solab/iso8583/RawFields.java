@@ -0,0 +1,155 @@
+/*
+j8583 A Java implementation of the ISO8583 protocol
+Copyright (C) 2007 Enrique Zamudio Lopez
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+*/
+package com.solab.iso8583;
+
+import com.solab.iso8583.parse.FieldParseInfo;
+import com.solab.iso8583.util.BitmapCodec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.text.ParseException;
+
+/** Stores the location of the fields of a parsed message that haven't been decoded yet,
+ * along with the parsers needed to decode them. The buffer is referenced, not copied,
+ * so it must not be modified while the message is in use.
+ */
+final class RawFields {
+
+    private final byte[] buf;
+    private final int[] offsets = new int[129];
+    private final int[] lengths = new int[129];
+    private final FieldParseInfo[] parsers = new FieldParseInfo[129];
+    private final CustomField<?>[] decoders = new CustomField<?>[129];
+    private final boolean binary;
+    private final boolean forceStringEncoding;
+    private final String encoding;
+    private int count;
+    private long bitmap1;
+    private long bitmap2;
+
+    RawFields(byte[] buf, boolean binary, boolean forceStringEncoding, String encoding) {
+        this.buf = buf;
+        this.binary = binary;
+        this.forceStringEncoding = forceStringEncoding;
+        this.encoding = encoding;
+    }
+
+    /** Returns a new instance for the same buffer and settings, with no fields. */
+    RawFields newEmpty() {
+        return new RawFields(buf, binary, forceStringEncoding, encoding);
+    }
+
+    /** Records the location of a field that is in the other instance, which must be
+     * for the same buffer. */
+    void put(int field, RawFields other) {
+        put(field, other.parsers[field], other.decoders[field], other.offsets[field], other.lengths[field]);
+    }
+
+    /** Records the location of a field in the buffer, including its length header. */
+    void put(int field, FieldParseInfo parser, CustomField<?> decoder, int offset, int length) {
+        if (parsers[field] == null) {
+            count++;
+            if (field <= 64) {
+                bitmap1 |= BitmapCodec.bit(field);
+            } else {
+                bitmap2 |= BitmapCodec.bit(field);
+            }
+        }
+        parsers[field] = parser;
+        decoders[field] = decoder;
+        offsets[field] = offset;
+        lengths[field] = length;
+    }
+
+    /** Returns true if the field is in the buffer and hasn't been decoded or removed. */
+    boolean has(int field) {
+        return parsers[field] != null;
+    }
+
+    /** Forgets about the specified field, usually because a new value has been set in it. */
+    void remove(int field) {
+        if (parsers[field] != null) {
+            parsers[field] = null;
+            decoders[field] = null;
+            count--;
+            if (field <= 64) {
+                bitmap1 &= ~BitmapCodec.bit(field);
+            } else {
+                bitmap2 &= ~BitmapCodec.bit(field);
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    /** Returns the bits for fields 2 to 64 that are in the buffer. */
+    long getPrimaryBitmap() {
+        return bitmap1;
+    }
+    /** Returns the bits for fields 65 to 128 that are in the buffer. */
+    long getSecondaryBitmap() {
+        return bitmap2;
+    }
+
+    Boolean getBinaryLength(int field) {
+        return parsers[field] == null ? null : parsers[field].getBinaryLength();
+    }
+    Boolean getBinaryValue(int field) {
+        return parsers[field] == null ? null : parsers[field].getBinaryValue();
+    }
+
+    /** Decodes the specified field, the same way MessageFactory does when it parses a message. */
+    IsoValue<?> decode(int field) throws ParseException, UnsupportedEncodingException {
+        final FieldParseInfo fpi = parsers[field];
+        final boolean binaryLength = fpi.isBinaryLength(binary);
+        final int limit = offsets[field] + lengths[field];
+        final IsoValue<?> val;
+        if (fpi.isBinaryValue(binary)) {
+            val = fpi.parseBinary(field, buf, offsets[field], limit, decoders[field], binaryLength);
+        } else {
+            val = fpi.parse(field, buf, offsets[field], limit, decoders[field], binaryLength);
+        }
+        if (val != null) {
+            val.setBinaryLength(fpi.getBinaryLength());
+            val.setBinaryValue(fpi.getBinaryValue());
+        }
+        return val;
+    }
+
+    /** Returns true if the original bytes can be written as they are to a message with
+     * the specified settings. */
+    boolean canCopy(boolean binary, boolean forceStringEncoding, String encoding) {
+        return this.binary == binary && this.forceStringEncoding == forceStringEncoding
+                && (this.encoding == null ? encoding == null : this.encoding.equals(encoding));
+    }
+
+    /** Returns the number of original bytes of the field, including its length header. */
+    int length(int field) {
+        return lengths[field];
+    }
+
+    /** Writes the original bytes of the field to the stream. */
+    void write(int field, OutputStream outs) throws IOException {
+        outs.write(buf, offsets[field], lengths[field]);
+    }
+
+}
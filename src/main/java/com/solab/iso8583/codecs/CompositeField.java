@@ -5,14 +5,15 @@ import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
 import com.solab.iso8583.parse.FieldParseInfo;
+import com.solab.iso8583.util.EncodeBuffer;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
+import java.text.ParsePosition;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -80,25 +81,12 @@ public class CompositeField implements CustomBinaryField<CompositeField> {
     public CompositeField decodeBinaryField(byte[] buf, int offset, int length) {
         @SuppressWarnings("rawtypes")
         List<IsoValue> vals = new ArrayList<>(parsers.size());
-        int pos = offset;
+        final ParsePosition cursor = new ParsePosition(offset);
+        final int limit = offset + length;
         try {
             for (FieldParseInfo fpi : parsers) {
-                IsoValue<?> v = fpi.parseBinary(0, buf, pos, fpi.getDecoder());
+                IsoValue<?> v = fpi.parseField(0, buf, cursor, limit, fpi.getDecoder(), true, true);
                 if (v != null) {
-                    if (v.getType() == IsoType.NUMERIC || v.getType() == IsoType.DATE10
-                            || v.getType() == IsoType.DATE4 || v.getType() == IsoType.DATE_EXP
-                            || v.getType() == IsoType.AMOUNT || v.getType() == IsoType.TIME
-                            || v.getType() == IsoType.DATE12 || v.getType() == IsoType.DATE14) {
-                        pos += (v.getLength() / 2) + (v.getLength() % 2);
-                    } else {
-                        pos += v.getLength();
-                    }
-                    if (v.getType() == IsoType.LLVAR || v.getType() == IsoType.LLBIN) {
-                        pos++;
-                    } else if (v.getType() == IsoType.LLLVAR || v.getType() == IsoType.LLLBIN
-                            || v.getType() == IsoType.LLLLVAR || v.getType() == IsoType.LLLLBIN) {
-                        pos+=2;
-                    }
                     vals.add(v);
                 }
             }
@@ -120,19 +108,11 @@ public class CompositeField implements CustomBinaryField<CompositeField> {
         @SuppressWarnings("rawtypes")
         List<IsoValue> vals = new ArrayList<>(parsers.size());
         byte[] buf = value.getBytes();
-        int pos = 0;
+        final ParsePosition cursor = new ParsePosition(0);
         try {
             for (FieldParseInfo fpi : parsers) {
-                IsoValue<?> v = fpi.parse(0, buf, pos, fpi.getDecoder());
+                IsoValue<?> v = fpi.parseField(0, buf, cursor, buf.length, fpi.getDecoder(), false, false);
                 if (v != null) {
-                    pos += v.toString().getBytes(fpi.getCharacterEncoding()).length;
-                    if (v.getType() == IsoType.LLVAR || v.getType() == IsoType.LLBIN) {
-                        pos+=2;
-                    } else if (v.getType() == IsoType.LLLVAR || v.getType() == IsoType.LLLBIN) {
-                        pos+=3;
-                    } else if (v.getType() == IsoType.LLLLBIN || v.getType() == IsoType.LLLLVAR) {
-                        pos+=4;
-                    }
                     vals.add(v);
                 }
             }
@@ -147,29 +127,35 @@ public class CompositeField implements CustomBinaryField<CompositeField> {
 
     @Override
     public byte[] encodeBinaryField(CompositeField value) {
-        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        final EncodeBuffer bout = EncodeBuffer.acquire();
         try {
             for (IsoValue<?> v : value.getValues()) {
                 v.write(bout, true, true);
             }
+            return bout.toByteArray();
         } catch (IOException ex) {
             log.error("Encoding binary CompositeField", ex);
             //shouldn't happen
+            return bout.toByteArray();
+        } finally {
+            bout.release();
         }
-        return bout.toByteArray();
     }
 
     @Override
     public String encodeField(CompositeField value) {
         try {
             String encoding = null;
-            final ByteArrayOutputStream bout = new ByteArrayOutputStream();
-            for (IsoValue<?> v : value.getValues()) {
-                v.write(bout, false, true);
-                if (encoding == null)encoding = v.getCharacterEncoding();
+            final EncodeBuffer bout = EncodeBuffer.acquire();
+            try {
+                for (IsoValue<?> v : value.getValues()) {
+                    v.write(bout, false, true);
+                    if (encoding == null)encoding = v.getCharacterEncoding();
+                }
+                return new String(bout.getBuffer(), 0, bout.size(), encoding==null?"UTF-8":encoding);
+            } finally {
+                bout.release();
             }
-            final byte[] buf = bout.toByteArray();
-            return new String(buf, encoding==null?"UTF-8":encoding);
         } catch (IOException ex) {
             log.error("Encoding text CompositeField", ex);
             return "";
@@ -24,6 +24,7 @@ import java.text.ParseException;
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
+import com.solab.iso8583.util.ByteString;
 
 /** This is the common abstract superclass to parse ALPHA and NUMERIC field types.
  * 
@@ -36,20 +37,33 @@ public abstract class AlphaNumericFieldParseInfo extends FieldParseInfo {
 	}
 
     @Override
-	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos,
+    public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+            throws ParseException, UnsupportedEncodingException {
+
+        return parse(field, buf, pos, buf.length, custom);
+    }
+
+    @Override
+	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos, final int limit,
                              final CustomField<T> custom)
             throws ParseException, UnsupportedEncodingException {
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid ALPHA/NUM field %d position %d",
                     field, pos), pos);
-		} else if (pos+length > buf.length) {
+		} else if (pos+length > limit) {
 			throw new ParseException(String.format("Insufficient data for %s field %d of length %d, pos %d",
 				type, field, length, pos), pos);
 		}
+        if (custom == null && type == IsoType.ALPHA) {
+            final ByteString view = byteString(buf, pos, length);
+            if (view != null) {
+                return new IsoValue<>(type, view, length, null);
+            }
+        }
         try {
             String _v = new String(buf, pos, length, getCharacterEncoding());
             if (_v.length() != length) {
-                _v = new String(buf, pos, buf.length-pos, getCharacterEncoding()).substring(0, length);
+                _v = new String(buf, pos, limit-pos, getCharacterEncoding()).substring(0, length);
             }
             if (custom == null) {
                 return new IsoValue<>(type, _v, length, null);
@@ -65,4 +79,22 @@ public abstract class AlphaNumericFieldParseInfo extends FieldParseInfo {
         }
 	}
 
+	@Override
+	public <T> IsoValue<?> parse(
+			final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parse(field, buf, pos, limit, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parseBinary(
+			final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parseBinary(field, buf, pos, limit, custom);
+	}
+
 }
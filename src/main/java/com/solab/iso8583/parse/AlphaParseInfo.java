@@ -24,6 +24,7 @@ import java.text.ParseException;
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
+import com.solab.iso8583.util.ByteString;
 
 /** This is the class used to parse ALPHA fields.
  * 
@@ -36,17 +37,30 @@ public class AlphaParseInfo extends AlphaNumericFieldParseInfo {
 	}
 
     @Override
-	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos,
+    public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+            throws ParseException, UnsupportedEncodingException {
+
+        return parseBinary(field, buf, pos, buf.length, custom);
+    }
+
+    @Override
+	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos, final int limit,
                                    final CustomField<T> custom)
             throws ParseException, UnsupportedEncodingException {
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid bin ALPHA field %d position %d",
                     field, pos), pos);
-		} else if (pos+length > buf.length) {
+		} else if (pos+length > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin %s field %d of length %d, pos %d",
 				type, field, length, pos), pos);
 		}
+        if (custom == null) {
+            final ByteString view = byteString(buf, pos, length);
+            if (view != null) {
+                return new IsoValue<>(type, view, length, null);
+            }
+        }
         try {
             if (custom == null) {
                 return new IsoValue<>(type, new String(buf, pos, length, getCharacterEncoding()), length, null);
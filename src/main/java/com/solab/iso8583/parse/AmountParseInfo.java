@@ -25,6 +25,7 @@ import java.text.ParseException;
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
+import com.solab.iso8583.LongValue;
 
 /** This class is used to parse AMOUNT fields.
  * 
@@ -38,17 +39,34 @@ public class AmountParseInfo extends FieldParseInfo {
 	}
 
     @Override
-	public <T> IsoValue<BigDecimal> parse(final int field, final byte[] buf,
-                                      final int pos, final CustomField<T> custom)
+    public <T> IsoValue<? extends Number> parse(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+            throws ParseException, UnsupportedEncodingException {
+
+        return parse(field, buf, pos, buf.length, custom);
+    }
+
+    @Override
+	public <T> IsoValue<? extends Number> parse(final int field, final byte[] buf,
+                                      final int pos, final int limit, final CustomField<T> custom)
             throws ParseException, UnsupportedEncodingException {
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid AMOUNT field %d position %d",
                     field, pos), pos);
 		}
-		if (pos+12 > buf.length) {
+		if (pos+12 > limit) {
 			throw new ParseException(String.format("Insufficient data for AMOUNT field %d, pos %d",
                     field, pos), pos);
 		}
+		if (primitiveNumbers && isAsciiEncoding()) {
+			long v = 0;
+			int i = pos;
+			for (; i < pos + 12 && buf[i] >= '0' && buf[i] <= '9'; i++) {
+				v = v * 10 + buf[i] - '0';
+			}
+			if (i == pos + 12) {
+				return LongValue.amount(v);
+			}
+		}
 		String c = new String(buf, pos, 12, getCharacterEncoding());
 		try {
 			return new IsoValue<>(type, new BigDecimal(c).movePointLeft(2));
@@ -62,9 +80,34 @@ public class AmountParseInfo extends FieldParseInfo {
 	}
 
     @Override
-	public <T> IsoValue<BigDecimal> parseBinary(final int field, final byte[] buf,
-                                            final int pos, final CustomField<T> custom)
+    public <T> IsoValue<? extends Number> parseBinary(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
             throws ParseException {
+
+        return parseBinary(field, buf, pos, buf.length, custom);
+    }
+
+    @Override
+	public <T> IsoValue<? extends Number> parseBinary(final int field, final byte[] buf,
+                                            final int pos, final int limit, final CustomField<T> custom)
+            throws ParseException {
+		if (pos < 0) {
+			throw new ParseException(String.format("Invalid bin AMOUNT field %d position %d",
+                    field, pos), pos);
+		}
+		if (pos+6 > limit) {
+			throw new ParseException(String.format("Insufficient data for bin AMOUNT field %d, pos %d",
+                    field, pos), pos);
+		}
+		if (primitiveNumbers) {
+			long v = 0;
+			int i = pos;
+			for (; i < pos + 6 && (buf[i] & 0xf0) < 0xa0 && (buf[i] & 0x0f) < 0x0a; i++) {
+				v = v * 100 + ((buf[i] & 0xf0) >> 4) * 10 + (buf[i] & 0x0f);
+			}
+			if (i == pos + 6) {
+				return LongValue.amount(v);
+			}
+		}
 		char[] digits = new char[13];
 		digits[10] = '.';
 		int start = 0;
@@ -86,4 +129,22 @@ public class AmountParseInfo extends FieldParseInfo {
 		}
 	}
 
+	@Override
+	public <T> IsoValue<?> parse(
+			final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parse(field, buf, pos, limit, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parseBinary(
+			final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parseBinary(field, buf, pos, limit, custom);
+	}
+
 }
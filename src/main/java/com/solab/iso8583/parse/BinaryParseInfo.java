@@ -38,16 +38,23 @@ public class BinaryParseInfo extends FieldParseInfo {
 		super(IsoType.BINARY, len);
 	}
 
+	@Override
+	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parse(field, buf, pos, buf.length, custom);
+	}
+
 	@Override
 	@SuppressFBWarnings
-	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos,
+	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos, final int limit,
                              final CustomField<T> custom)
 			throws ParseException, UnsupportedEncodingException {
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid BINARY field %d position %d",
                     field, pos), pos);
 		}
-		if (pos+(length*2) > buf.length) {
+		if (pos+(length*2) > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for BINARY field %d of length %d, pos %d",
 				field, length, pos), pos);
@@ -63,13 +70,20 @@ public class BinaryParseInfo extends FieldParseInfo {
 	}
 
 	@Override
-	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos,
+	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+			throws ParseException {
+
+		return parseBinary(field, buf, pos, buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos, final int limit,
                                    final CustomField<T> custom) throws ParseException {
         if (pos < 0) {
             throw new ParseException(String.format("Invalid BINARY field %d position %d",
                       field, pos), pos);
         }
-        if (pos+length > buf.length) {
+        if (pos+length > limit) {
             throw new ParseException(String.format(
                       "Insufficient data for BINARY field %d of length %d, pos %d",
                 field, length, pos), pos);
@@ -85,4 +99,22 @@ public class BinaryParseInfo extends FieldParseInfo {
 		}
 	}
 
+	@Override
+	public <T> IsoValue<?> parse(
+			final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parse(field, buf, pos, limit, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parseBinary(
+			final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parseBinary(field, buf, pos, limit, custom);
+	}
+
 }
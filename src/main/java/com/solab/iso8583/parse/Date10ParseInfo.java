@@ -20,7 +20,6 @@ package com.solab.iso8583.parse;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
-import java.util.Calendar;
 import java.util.Date;
 
 import com.solab.iso8583.CustomField;
@@ -37,67 +36,81 @@ public class Date10ParseInfo extends DateTimeParseInfo {
 		super(IsoType.DATE10, 10);
 	}
 
+	@Override
+	public <T> IsoValue<Date> parse(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parse(field, buf, pos, buf.length, custom);
+	}
+
 	@Override
 	public <T> IsoValue<Date> parse(final int field, final byte[] buf,
-                                final int pos, final CustomField<T> custom)
+                                final int pos, final int limit, final CustomField<T> custom)
 			throws ParseException, UnsupportedEncodingException {
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid DATE10 field %d position %d",
                     field, pos), pos);
 		}
-		if (pos+10 > buf.length) {
+		if (pos+10 > limit) {
 			throw new ParseException(String.format("Insufficient data for DATE10 field %d, pos %d",
                     field, pos), pos);
 		}
-		//A SimpleDateFormat in the case of dates won't help because of the missing data
-		//we have to use the current date for reference and change what comes in the buffer
-		Calendar cal = Calendar.getInstance();
-		//Set the month in the date
+		final IsoValue<Date> cached = getCachedValue(buf, pos, 10, false);
+		if (cached != null) {
+			return cached;
+		}
+		//The year is not in the field, so we use the current year for reference
+		final int year = (int)(ymd(localNow()) / 10000);
+		final int month, day, hour, minute, second;
         if (forceStringDecoding) {
-            cal.set(Calendar.MONTH, Integer.parseInt(new String(buf, pos, 2, getCharacterEncoding()), 10)-1);
-            cal.set(Calendar.DATE, Integer.parseInt(new String(buf, pos+2, 2, getCharacterEncoding()), 10));
-            cal.set(Calendar.HOUR_OF_DAY, Integer.parseInt(new String(buf, pos+4, 2, getCharacterEncoding()), 10));
-            cal.set(Calendar.MINUTE, Integer.parseInt(new String(buf, pos+6, 2, getCharacterEncoding()), 10));
-            cal.set(Calendar.SECOND, Integer.parseInt(new String(buf, pos+8, 2, getCharacterEncoding()), 10));
+            month = Integer.parseInt(new String(buf, pos, 2, getCharacterEncoding()), 10);
+            day = Integer.parseInt(new String(buf, pos+2, 2, getCharacterEncoding()), 10);
+            hour = Integer.parseInt(new String(buf, pos+4, 2, getCharacterEncoding()), 10);
+            minute = Integer.parseInt(new String(buf, pos+6, 2, getCharacterEncoding()), 10);
+            second = Integer.parseInt(new String(buf, pos+8, 2, getCharacterEncoding()), 10);
         } else {
-            cal.set(Calendar.MONTH, ((buf[pos] - 48) * 10) + buf[pos + 1] - 49);
-            cal.set(Calendar.DATE, ((buf[pos + 2] - 48) * 10) + buf[pos + 3] - 48);
-            cal.set(Calendar.HOUR_OF_DAY, ((buf[pos + 4] - 48) * 10) + buf[pos + 5] - 48);
-            cal.set(Calendar.MINUTE, ((buf[pos + 6] - 48) * 10) + buf[pos + 7] - 48);
-            cal.set(Calendar.SECOND, ((buf[pos + 8] - 48) * 10) + buf[pos + 9] - 48);
+            month = ((buf[pos] - 48) * 10) + buf[pos + 1] - 48;
+            day = ((buf[pos + 2] - 48) * 10) + buf[pos + 3] - 48;
+            hour = ((buf[pos + 4] - 48) * 10) + buf[pos + 5] - 48;
+            minute = ((buf[pos + 6] - 48) * 10) + buf[pos + 7] - 48;
+            second = ((buf[pos + 8] - 48) * 10) + buf[pos + 9] - 48;
         }
-        cal.set(Calendar.MILLISECOND,0);
-        return createValue(cal, true);
+        return cacheValue(buf, pos, 10, false,
+                createValue(year, month, day, hour, minute, second, 0, true));
+	}
+
+	@Override
+	public <T> IsoValue<Date> parseBinary(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+			throws ParseException {
+
+		return parseBinary(field, buf, pos, buf.length, custom);
 	}
 
 	@Override
 	public <T> IsoValue<Date> parseBinary(final int field, final byte[] buf,
-                                      final int pos, final CustomField<T> custom)
+                                      final int pos, final int limit, final CustomField<T> custom)
             throws ParseException {
         if (pos < 0) {
             throw new ParseException(String.format("Invalid DATE10 field %d position %d",
                       field, pos), pos);
         }
-        if (pos+5 > buf.length) {
+        if (pos+5 > limit) {
             throw new ParseException(String.format("Insufficient data for DATE10 field %d, pos %d",
                       field, pos), pos);
+        }
+        final IsoValue<Date> cached = getCachedValue(buf, pos, 5, true);
+        if (cached != null) {
+            return cached;
         }
 		int[] tens = new int[5];
 		int start = 0;
 		for (int i = pos; i < pos + tens.length; i++) {
 			tens[start++] = (((buf[i] & 0xf0) >> 4) * 10) + (buf[i] & 0x0f);
 		}
-		Calendar cal = Calendar.getInstance();
-		//A SimpleDateFormat in the case of dates won't help because of the missing data
-		//we have to use the current date for reference and change what comes in the buffer
-		//Set the month in the date
-		cal.set(Calendar.MONTH, tens[0] - 1);
-		cal.set(Calendar.DATE, tens[1]);
-		cal.set(Calendar.HOUR_OF_DAY, tens[2]);
-		cal.set(Calendar.MINUTE, tens[3]);
-		cal.set(Calendar.SECOND, tens[4]);
-		cal.set(Calendar.MILLISECOND,0);
-        return createValue(cal, true);
+		//The year is not in the field, so we use the current year for reference
+        return cacheValue(buf, pos, 5, true,
+                createValue((int)(ymd(localNow()) / 10000), tens[0], tens[1], tens[2], tens[3], tens[4],
+                0, true));
 	}
 
 }
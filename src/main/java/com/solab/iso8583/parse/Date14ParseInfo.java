@@ -6,7 +6,6 @@ import com.solab.iso8583.IsoValue;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
-import java.util.Calendar;
 import java.util.Date;
 
 /**
@@ -21,70 +20,80 @@ public class Date14ParseInfo extends DateTimeParseInfo {
    		super(IsoType.DATE14, 14);
    	}
 
+   	@Override
+   	public <T> IsoValue<Date> parse(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+   			throws ParseException, UnsupportedEncodingException {
+
+   		return parse(field, buf, pos, buf.length, custom);
+   	}
+
    	@Override
    	public <T> IsoValue<Date> parse(final int field, final byte[] buf,
-                                       final int pos, final CustomField<T> custom)
+                                       final int pos, final int limit, final CustomField<T> custom)
    			throws ParseException, UnsupportedEncodingException {
    		if (pos < 0) {
    			throw new ParseException(String.format("Invalid DATE14 field %d position %d",
                        field, pos), pos);
    		}
-   		if (pos+14 > buf.length) {
+   		if (pos+14 > limit) {
    			throw new ParseException(String.format("Insufficient data for DATE14 field %d, pos %d",
                        field, pos), pos);
    		}
-   		//A SimpleDateFormat in the case of dates won't help because of the missing data
-   		//we have to use the current date for reference and change what comes in the buffer
-        Calendar cal = Calendar.getInstance();
-   		//Set the month in the date
+   		final IsoValue<Date> cached = getCachedValue(buf, pos, 14, false);
+   		if (cached != null) {
+   		    return cached;
+   		}
+        final int year, month, day, hour, minute, second;
         if (forceStringDecoding) {
-            cal.set(Calendar.YEAR, Integer.parseInt(new String(buf, pos, 4, getCharacterEncoding()), 10));
-            cal.set(Calendar.MONTH, Integer.parseInt(new String(buf, pos, 2, getCharacterEncoding()), 10)-1);
-            cal.set(Calendar.DATE, Integer.parseInt(new String(buf, pos+2, 2, getCharacterEncoding()), 10));
-            cal.set(Calendar.HOUR_OF_DAY, Integer.parseInt(new String(buf, pos+4, 2, getCharacterEncoding()), 10));
-            cal.set(Calendar.MINUTE, Integer.parseInt(new String(buf, pos+6, 2, getCharacterEncoding()), 10));
-            cal.set(Calendar.SECOND, Integer.parseInt(new String(buf, pos+8, 2, getCharacterEncoding()), 10));
+            year = Integer.parseInt(new String(buf, pos, 4, getCharacterEncoding()), 10);
+            month = Integer.parseInt(new String(buf, pos, 2, getCharacterEncoding()), 10);
+            day = Integer.parseInt(new String(buf, pos+2, 2, getCharacterEncoding()), 10);
+            hour = Integer.parseInt(new String(buf, pos+4, 2, getCharacterEncoding()), 10);
+            minute = Integer.parseInt(new String(buf, pos+6, 2, getCharacterEncoding()), 10);
+            second = Integer.parseInt(new String(buf, pos+8, 2, getCharacterEncoding()), 10);
         } else {
-            cal.set(Calendar.YEAR, ((buf[pos] - 48) * 1000) + ((buf[pos + 1] - 48) * 100) + ((buf[pos + 2] - 48) * 10) + buf[pos + 3] - 48);
-            cal.set(Calendar.MONTH, ((buf[pos+4] - 48) * 10) + buf[pos + 5] - 49);
-            cal.set(Calendar.DATE, ((buf[pos + 6] - 48) * 10) + buf[pos + 7] - 48);
-            cal.set(Calendar.HOUR_OF_DAY, ((buf[pos + 8] - 48) * 10) + buf[pos + 9] - 48);
-            cal.set(Calendar.MINUTE, ((buf[pos + 10] - 48) * 10) + buf[pos + 11] - 48);
-            cal.set(Calendar.SECOND, ((buf[pos + 12] - 48) * 10) + buf[pos + 13] - 48);
+            year = ((buf[pos] - 48) * 1000) + ((buf[pos + 1] - 48) * 100) + ((buf[pos + 2] - 48) * 10) + buf[pos + 3] - 48;
+            month = ((buf[pos+4] - 48) * 10) + buf[pos + 5] - 48;
+            day = ((buf[pos + 6] - 48) * 10) + buf[pos + 7] - 48;
+            hour = ((buf[pos + 8] - 48) * 10) + buf[pos + 9] - 48;
+            minute = ((buf[pos + 10] - 48) * 10) + buf[pos + 11] - 48;
+            second = ((buf[pos + 12] - 48) * 10) + buf[pos + 13] - 48;
         }
-        cal.set(Calendar.MILLISECOND,0);
-        return createValue(cal, true);
+        return cacheValue(buf, pos, 14, false,
+                createValue(year, month, day, hour, minute, second, 0, true));
+   	}
+
+   	@Override
+   	public <T> IsoValue<Date> parseBinary(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+   			throws ParseException {
+
+   		return parseBinary(field, buf, pos, buf.length, custom);
    	}
 
    	@Override
    	public <T> IsoValue<Date> parseBinary(final int field, final byte[] buf,
-                                          final int pos, final CustomField<T> custom)
+                                          final int pos, final int limit, final CustomField<T> custom)
                throws ParseException {
         if (pos < 0) {
             throw new ParseException(String.format("Invalid DATE14 field %d position %d",
                 field, pos), pos);
         }
-        if (pos+7 > buf.length) {
+        if (pos+7 > limit) {
             throw new ParseException(String.format("Insufficient data for DATE14 field %d, pos %d",
                 field, pos), pos);
+        }
+        final IsoValue<Date> cached = getCachedValue(buf, pos, 7, true);
+        if (cached != null) {
+            return cached;
         }
    		int[] tens = new int[7];
    		int start = 0;
    		for (int i = pos; i < pos + tens.length; i++) {
    			tens[start++] = (((buf[i] & 0xf0) >> 4) * 10) + (buf[i] & 0x0f);
    		}
-   		Calendar cal = Calendar.getInstance();
-   		//A SimpleDateFormat in the case of dates won't help because of the missing data
-   		//we have to use the current date for reference and change what comes in the buffer
-   		//Set the month in the date
-        cal.set(Calendar.YEAR, (tens[0] * 100) + tens[1]);
-   		cal.set(Calendar.MONTH, tens[2] - 1);
-   		cal.set(Calendar.DATE, tens[3]);
-   		cal.set(Calendar.HOUR_OF_DAY, tens[4]);
-   		cal.set(Calendar.MINUTE, tens[5]);
-   		cal.set(Calendar.SECOND, tens[6]);
-   		cal.set(Calendar.MILLISECOND,0);
-        return createValue(cal, true);
+        return cacheValue(buf, pos, 7, true,
+                createValue((tens[0] * 100) + tens[1], tens[2], tens[3], tens[4], tens[5], tens[6],
+                0, true));
    	}
 
 }
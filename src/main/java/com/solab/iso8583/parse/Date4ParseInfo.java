@@ -20,7 +20,6 @@ package com.solab.iso8583.parse;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
-import java.util.Calendar;
 import java.util.Date;
 
 import com.solab.iso8583.CustomField;
@@ -38,55 +37,69 @@ public class Date4ParseInfo extends DateTimeParseInfo {
 	}
 
 	@Override
-	public <T> IsoValue<Date> parse(final int field, final byte[] buf, final int pos,
+	public <T> IsoValue<Date> parse(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parse(field, buf, pos, buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<Date> parse(final int field, final byte[] buf, final int pos, final int limit,
                                 final CustomField<T> custom)
             throws ParseException, UnsupportedEncodingException {
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid DATE4 field %d position %d",
                     field, pos), pos);
 		}
-		if (pos+4 > buf.length) {
+		if (pos+4 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for DATE4 field %d, pos %d", field, pos), pos);
 		}
-		Calendar cal = Calendar.getInstance();
-		cal.set(Calendar.HOUR, 0);
-		cal.set(Calendar.MINUTE, 0);
-		cal.set(Calendar.SECOND, 0);
-		cal.set(Calendar.MILLISECOND, 0);
-		//Set the month in the date
+		final IsoValue<Date> cached = getCachedValue(buf, pos, 4, false);
+		if (cached != null) {
+			return cached;
+		}
+		//The year is not in the field, so we use the current year for reference
+		final long now = localNow();
+		final int month, day;
         if (forceStringDecoding) {
-            cal.set(Calendar.MONTH, Integer.parseInt(new String(buf, pos, 2, getCharacterEncoding()), 10)-1);
-            cal.set(Calendar.DATE, Integer.parseInt(new String(buf, pos+2, 2, getCharacterEncoding()), 10));
+            month = Integer.parseInt(new String(buf, pos, 2, getCharacterEncoding()), 10);
+            day = Integer.parseInt(new String(buf, pos+2, 2, getCharacterEncoding()), 10);
         } else {
-            cal.set(Calendar.MONTH, ((buf[pos] - 48) * 10) + buf[pos + 1] - 49);
-            cal.set(Calendar.DATE, ((buf[pos + 2] - 48) * 10) + buf[pos + 3] - 48);
+            month = ((buf[pos] - 48) * 10) + buf[pos + 1] - 48;
+            day = ((buf[pos + 2] - 48) * 10) + buf[pos + 3] - 48;
         }
-        return createValue(cal, true);
+        return cacheValue(buf, pos, 4, false,
+                createValue((int)(ymd(now) / 10000), month, day, zeroHour(now), 0, 0, 0, true));
 	}
 
 	@Override
-	public <T> IsoValue<Date> parseBinary(final int field, final byte[] buf, final int pos,
+	public <T> IsoValue<Date> parseBinary(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+			throws ParseException {
+
+		return parseBinary(field, buf, pos, buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<Date> parseBinary(final int field, final byte[] buf, final int pos, final int limit,
                                       final CustomField<T> custom) throws ParseException {
 		int[] tens = new int[2];
 		int start = 0;
-        if (buf.length-pos < 2) {
+        if (limit-pos < 2) {
             throw new ParseException(String.format(
                     "Insufficient data to parse binary DATE4 field %d pos %d",
                     field, pos), pos);
+        }
+        final IsoValue<Date> cached = getCachedValue(buf, pos, 2, true);
+        if (cached != null) {
+            return cached;
         }
 		for (int i = pos; i < pos + tens.length; i++) {
 			tens[start++] = (((buf[i] & 0xf0) >> 4) * 10) + (buf[i] & 0x0f);
 		}
-		Calendar cal = Calendar.getInstance();
-		cal.set(Calendar.HOUR, 0);
-		cal.set(Calendar.MINUTE, 0);
-		cal.set(Calendar.SECOND, 0);
-		//Set the month in the date
-		cal.set(Calendar.MONTH, tens[0] - 1);
-		cal.set(Calendar.DATE, tens[1]);
-		cal.set(Calendar.MILLISECOND,0);
-        return createValue(cal, true);
+		final long now = localNow();
+        return cacheValue(buf, pos, 2, true,
+                createValue((int)(ymd(now) / 10000), tens[0], tens[1], zeroHour(now), 0, 0, 0, true));
 	}
 
 }
@@ -6,7 +6,6 @@ import com.solab.iso8583.IsoValue;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
-import java.util.Calendar;
 import java.util.Date;
 
 /**
@@ -22,72 +21,68 @@ public class Date6ParseInfo extends DateTimeParseInfo {
    	}
 
     @Override
-    public <T> IsoValue<Date> parse(int field, byte[] buf, int pos, CustomField<T> custom) throws ParseException, UnsupportedEncodingException {
+    public <T> IsoValue<Date> parse(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+            throws ParseException, UnsupportedEncodingException {
+
+        return parse(field, buf, pos, buf.length, custom);
+    }
+
+    @Override
+    public <T> IsoValue<Date> parse(int field, byte[] buf, int pos, int limit, CustomField<T> custom) throws ParseException, UnsupportedEncodingException {
         if (pos < 0) {
             throw new ParseException(String.format("Invalid DATE6 field %d position %d",
                                 field, pos), pos);
         }
-        if (pos+6 > buf.length) {
+        if (pos+6 > limit) {
             throw new ParseException(String.format(
                 "Insufficient data for DATE6 field %d, pos %d", field, pos), pos);
         }
-        Calendar cal = Calendar.getInstance();
-        cal.set(Calendar.HOUR_OF_DAY, 0);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND, 0);
-        //Set the month in the date
-        int year;
+        final IsoValue<Date> cached = getCachedValue(buf, pos, 6, false);
+        if (cached != null) {
+            return cached;
+        }
+        final int year, month, day;
         if (forceStringDecoding) {
             year = Integer.parseInt(new String(buf, pos, 2, getCharacterEncoding()), 10);
-            cal.set(Calendar.MONTH, Integer.parseInt(new String(buf, pos+2, 2, getCharacterEncoding()), 10)-1);
-            cal.set(Calendar.DATE, Integer.parseInt(new String(buf, pos+4, 2, getCharacterEncoding()), 10));
+            month = Integer.parseInt(new String(buf, pos+2, 2, getCharacterEncoding()), 10);
+            day = Integer.parseInt(new String(buf, pos+4, 2, getCharacterEncoding()), 10);
         } else {
             year = ((buf[pos] - 48) * 10) + buf[pos + 1] - 48;
-            cal.set(Calendar.MONTH, ((buf[pos + 2] - 48) * 10) + buf[pos + 3] - 49);
-            cal.set(Calendar.DATE, ((buf[pos + 4] - 48) * 10) + buf[pos + 5] - 48);
-        }
-        if (year > 50) {
-            cal.set(Calendar.YEAR, 1900+year);
-        } else {
-            cal.set(Calendar.YEAR, 2000+year);
+            month = ((buf[pos + 2] - 48) * 10) + buf[pos + 3] - 48;
+            day = ((buf[pos + 4] - 48) * 10) + buf[pos + 5] - 48;
         }
-        return createValue(cal, false);
+        return cacheValue(buf, pos, 6, false,
+                createValue(year > 50 ? 1900+year : 2000+year, month, day, 0, 0, 0, 0, false));
     }
 
     @Override
-    public <T> IsoValue<Date> parseBinary(int field, byte[] buf, int pos, CustomField<T> custom) throws ParseException, UnsupportedEncodingException {
+    public <T> IsoValue<Date> parseBinary(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+            throws ParseException, UnsupportedEncodingException {
+
+        return parseBinary(field, buf, pos, buf.length, custom);
+    }
+
+    @Override
+    public <T> IsoValue<Date> parseBinary(int field, byte[] buf, int pos, int limit, CustomField<T> custom) throws ParseException, UnsupportedEncodingException {
         if (pos < 0) {
             throw new ParseException(String.format("Invalid DATE6 field %d position %d",
                             field, pos), pos);
         }
-        if (pos+3 > buf.length) {
+        if (pos+3 > limit) {
             throw new ParseException(String.format("Insufficient data for DATE6 field %d, pos %d",
                                 field, pos), pos);
         }
+        final IsoValue<Date> cached = getCachedValue(buf, pos, 3, true);
+        if (cached != null) {
+            return cached;
+        }
         int[] tens = new int[3];
         int start = 0;
         for (int i = pos; i < pos + tens.length; i++) {
             tens[start++] = (((buf[i] & 0xf0) >> 4) * 10) + (buf[i] & 0x0f);
         }
-        Calendar cal = Calendar.getInstance();
-        //A SimpleDateFormat in the case of dates won't help because of the missing data
-        //we have to use the current date for reference and change what comes in the buffer
-        //Set the month in the date
-        if (tens[0] > 50) {
-            cal.set(Calendar.YEAR, 1900+tens[0]);
-        } else {
-            cal.set(Calendar.YEAR, 2000+tens[0]);
-        }
-        cal.set(Calendar.MONTH, tens[1] - 1);
-        cal.set(Calendar.DATE, tens[2]);
-        cal.set(Calendar.HOUR_OF_DAY, 0);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND,0);
-        if (tz != null) {
-            cal.setTimeZone(tz);
-        }
-        return createValue(cal, true);
+        return cacheValue(buf, pos, 3, true,
+                createValue(tens[0] > 50 ? 1900+tens[0] : 2000+tens[0], tens[1], tens[2],
+                0, 0, 0, 0, true));
     }
 }
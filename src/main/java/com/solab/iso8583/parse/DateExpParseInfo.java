@@ -20,7 +20,6 @@ package com.solab.iso8583.parse;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
-import java.util.Calendar;
 import java.util.Date;
 
 import com.solab.iso8583.CustomField;
@@ -37,62 +36,75 @@ public class DateExpParseInfo extends DateTimeParseInfo {
 		super(IsoType.DATE_EXP, 4);
 	}
 
+	@Override
+	public <T> IsoValue<Date> parse(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parse(field, buf, pos, buf.length, custom);
+	}
+
 	@Override
 	public <T> IsoValue<Date> parse(final int field, final byte[] buf,
-                                final int pos, final CustomField<T> custom)
+                                final int pos, final int limit, final CustomField<T> custom)
             throws ParseException, UnsupportedEncodingException {
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid DATE_EXP field %d position %d",
                     field, pos), pos);
 		}
-		if (pos+4 > buf.length) {
+		if (pos+4 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for DATE_EXP field %d pos %d", field, pos), pos);
 		}
-		Calendar cal = Calendar.getInstance();
-		cal.set(Calendar.HOUR, 0);
-		cal.set(Calendar.MINUTE, 0);
-		cal.set(Calendar.SECOND, 0);
-		cal.set(Calendar.DATE, 1);
-		//Set the month in the date
+		final IsoValue<Date> cached = getCachedValue(buf, pos, 4, false);
+		if (cached != null) {
+			return cached;
+		}
+		//The century is taken from the current year
+		final long now = localNow();
+		final int century = (int)(ymd(now) / 1000000) * 100;
+		final int year, month;
         if (forceStringDecoding) {
-            cal.set(Calendar.YEAR, cal.get(Calendar.YEAR) - (cal.get(Calendar.YEAR) % 100)
-                    + Integer.parseInt(new String(buf, pos, 2, getCharacterEncoding()), 10));
-            cal.set(Calendar.MONTH, Integer.parseInt(new String(buf, pos+2, 2, getCharacterEncoding()), 10)-1);
+            year = century + Integer.parseInt(new String(buf, pos, 2, getCharacterEncoding()), 10);
+            month = Integer.parseInt(new String(buf, pos+2, 2, getCharacterEncoding()), 10);
         } else {
-            cal.set(Calendar.YEAR, cal.get(Calendar.YEAR) - (cal.get(Calendar.YEAR) % 100)
-                    + ((buf[pos] - 48) * 10) + buf[pos + 1] - 48);
-            cal.set(Calendar.MONTH, ((buf[pos + 2] - 48) * 10) + buf[pos + 3] - 49);
+            year = century + ((buf[pos] - 48) * 10) + buf[pos + 1] - 48;
+            month = ((buf[pos + 2] - 48) * 10) + buf[pos + 3] - 48;
         }
-        return createValue(cal, false);
+        return cacheValue(buf, pos, 4, false,
+                createValue(year, month, 1, zeroHour(now), 0, 0, (int)Math.floorMod(now, 1000L), false));
+	}
+
+	@Override
+	public <T> IsoValue<Date> parseBinary(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+			throws ParseException {
+
+		return parseBinary(field, buf, pos, buf.length, custom);
 	}
 
 	@Override
 	public <T> IsoValue<Date> parseBinary(final int field, final byte[] buf,
-                                      final int pos, final CustomField<T> custom)
+                                      final int pos, final int limit, final CustomField<T> custom)
             throws ParseException {
         if (pos < 0) {
             throw new ParseException(String.format("Invalid DATE_EXP field %d position %d",
                       field, pos), pos);
         }
-        if (pos+2 > buf.length) {
+        if (pos+2 > limit) {
             throw new ParseException(String.format(
                       "Insufficient data for DATE_EXP field %d pos %d", field, pos), pos);
+        }
+        final IsoValue<Date> cached = getCachedValue(buf, pos, 2, true);
+        if (cached != null) {
+            return cached;
         }
 		int[] tens = new int[2];
 		int start = 0;
 		for (int i = pos; i < pos + tens.length; i++) {
 			tens[start++] = (((buf[i] & 0xf0) >> 4) * 10) + (buf[i] & 0x0f);
 		}
-		Calendar cal = Calendar.getInstance();
-		cal.set(Calendar.HOUR, 0);
-		cal.set(Calendar.MINUTE, 0);
-		cal.set(Calendar.SECOND, 0);
-		cal.set(Calendar.DATE, 1);
-		//Set the month in the date
-		cal.set(Calendar.YEAR, cal.get(Calendar.YEAR)
-				- (cal.get(Calendar.YEAR) % 100) + tens[0]);
-		cal.set(Calendar.MONTH, tens[1] - 1);
-        return createValue(cal, false);
+		final long now = localNow();
+        return cacheValue(buf, pos, 2, true,
+                createValue((int)(ymd(now) / 1000000) * 100 + tens[0], tens[1], 1, zeroHour(now), 0, 0,
+                (int)Math.floorMod(now, 1000L), false));
 	}
 }
@@ -1,8 +1,13 @@
 package com.solab.iso8583.parse;
 
+import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
+import com.solab.iso8583.util.DateCodec;
 
+import java.io.UnsupportedEncodingException;
+import java.text.ParseException;
+import java.time.Clock;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
@@ -18,6 +23,15 @@ public abstract class DateTimeParseInfo extends FieldParseInfo {
     protected static final long FUTURE_TOLERANCE;
     protected TimeZone tz;
     private static TimeZone defaultTimezone;
+    private static volatile Clock clock = Clock.systemUTC();
+    private static volatile boolean cacheDates;
+    /** Each thread remembers the last few dates it decoded. */
+    private static final ThreadLocal<DecodeCache> CACHE = new ThreadLocal<DecodeCache>() {
+        @Override
+        protected DecodeCache initialValue() {
+            return new DecodeCache();
+        }
+    };
 
    	static {
    		FUTURE_TOLERANCE = Long.parseLong(System.getProperty("j8583.future.tolerance", "900000"));
@@ -30,6 +44,51 @@ public abstract class DateTimeParseInfo extends FieldParseInfo {
    	    return defaultTimezone;
     }
 
+    /** Sets the clock from which the parsers take the current time, to complete dates that
+     * don't have a year and to check that dates are not too far in the future. It can be
+     * a CoarseClock to read the time faster, or a fixed clock for tests and replays.
+     * Default is the system clock. */
+    public static void setClock(Clock value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        clock = value;
+    }
+    public static Clock getClock() {
+        return clock;
+    }
+
+    /** Tells the date parsers to remember, in each thread, the last few dates they decoded,
+     * so that a field with the same bytes, in the same second of the clock, is not decoded again.
+     * This helps when many messages in a row carry the same timestamp. Since a decoded date
+     * depends on the current time (the year, or the date for TIME), the cached dates are only
+     * reused during the second in which they were decoded. The cache is not used if the
+     * future tolerance is not a whole number of seconds. Default is false. */
+    public static void setCacheDecodedDates(boolean flag) {
+        cacheDates = flag;
+    }
+    public static boolean isCacheDecodedDates() {
+        return cacheDates;
+    }
+
+    /** Returns the value that this parser decoded in this thread from the same bytes
+     * during the current second, or null if there is none. */
+    protected IsoValue<Date> getCachedValue(byte[] buf, int pos, int len, boolean binary) {
+        if (!cacheDates || FUTURE_TOLERANCE % 1000 != 0) {
+            return null;
+        }
+        return CACHE.get().get(this, buf, pos, len, binary, tz != null ? tz : getDefaultTimeZone(), clock.millis());
+    }
+
+    /** Remembers the value decoded from the bytes, if the cache is enabled, and returns it. */
+    protected IsoValue<Date> cacheValue(byte[] buf, int pos, int len, boolean binary, IsoValue<Date> value) {
+        if (cacheDates && FUTURE_TOLERANCE % 1000 == 0) {
+            CACHE.get().put(this, buf, pos, len, binary, tz != null ? tz : getDefaultTimeZone(),
+                    clock.millis(), value);
+        }
+        return value;
+    }
+
     protected DateTimeParseInfo(IsoType type, int length) {
         super(type, length);
     }
@@ -43,13 +102,58 @@ public abstract class DateTimeParseInfo extends FieldParseInfo {
 
     public static void adjustWithFutureTolerance(Calendar cal) {
    		//We need to handle a small tolerance into the future (a couple of minutes)
-   		long now = System.currentTimeMillis();
+   		long now = clock.millis();
    		long then = cal.getTimeInMillis();
    		if (then > now && then-now > FUTURE_TOLERANCE) {
    			cal.add(Calendar.YEAR, -1);
    		}
    	}
 
+    /** Returns the current time in the JVM's default timezone, as milliseconds from 1970-01-01
+     * in that timezone. The parts of a date that are not in the field, such as the year of
+     * a DATE10, are taken from it, as they used to be taken from Calendar.getInstance(). */
+    protected static long localNow() {
+        return DateCodec.toLocalMillis(null, clock.millis());
+    }
+
+    /** Returns the date of the local time as a number in the form yyyyMMdd. */
+    protected static long ymd(long localMillis) {
+        return DateCodec.toYmd(Math.floorDiv(localMillis, DateCodec.MILLIS_PER_DAY));
+    }
+
+    /** Returns the hour of the day that a Calendar set to the local time gets when its HOUR
+     * is set to 0, which keeps AM/PM: 12 in the afternoon, 0 otherwise. */
+    protected static int zeroHour(long localMillis) {
+        return Math.floorMod(localMillis, DateCodec.MILLIS_PER_DAY) >= 43200000L ? 12 : 0;
+    }
+
+    /** Creates the value for the specified date fields in the timezone of this parser, which may
+     * be out of range as in a lenient Calendar, without creating a Calendar.
+     * @param month The month, 1 to 12.
+     * @param adjusting Whether to move the date one year back if it's too far in the future. */
+    protected IsoValue<Date> createValue(int year, int month, int day, int hour, int minute,
+                                         int second, int millis, boolean adjusting) {
+        final TimeZone zone = tz != null ? tz : getDefaultTimeZone();
+        long time = DateCodec.toEpochMillis(zone, year, month, day, hour, minute, second, millis);
+        if (adjusting) {
+            final long now = clock.millis();
+            if (time > now && time - now > FUTURE_TOLERANCE) {
+                //Same as Calendar.add(YEAR, -1), which keeps the time of day
+                final long local = DateCodec.toLocalMillis(zone, time);
+                final long date = ymd(local);
+                final int y = (int)(date / 10000) - 1;
+                final int m = (int)(date / 100 % 100);
+                time = DateCodec.toEpochMillis(zone, y, m, Math.min((int)(date % 100), DateCodec.lengthOfMonth(y, m)),
+                        0, 0, 0, (int)Math.floorMod(local, DateCodec.MILLIS_PER_DAY));
+            }
+        }
+        IsoValue<Date> v = new IsoValue<>(type, new Date(time), null);
+        if (zone != null) {
+            v.setTimeZone(zone);
+        }
+        return v;
+    }
+
    	protected IsoValue<Date> createValue(Calendar cal, boolean adjusting) {
         if (tz != null) {
             cal.setTimeZone(tz);
@@ -67,4 +171,92 @@ public abstract class DateTimeParseInfo extends FieldParseInfo {
         }
 		return v;
     }
+
+    /** A small direct-mapped cache of decoded dates, used by a single thread. */
+    private static final class DecodeCache {
+        private static final int SIZE = 8;
+        private final DateTimeParseInfo[] owners = new DateTimeParseInfo[SIZE];
+        private final boolean[] binaries = new boolean[SIZE];
+        private final byte[][] keys = new byte[SIZE][16];
+        private final int[] lengths = new int[SIZE];
+        private final TimeZone[] zones = new TimeZone[SIZE];
+        private final long[] seconds = new long[SIZE];
+        private final long[] times = new long[SIZE];
+        private final TimeZone[] valueZones = new TimeZone[SIZE];
+        /** The second in which the last lookup was done, to check that the value
+         * stored after it was decoded in the same second. */
+        private long lookupSecond = Long.MIN_VALUE;
+
+        private static int slot(DateTimeParseInfo owner, byte[] buf, int pos, int len) {
+            int h = System.identityHashCode(owner);
+            for (int i = pos; i < pos + len; i++) {
+                h = h * 31 + buf[i];
+            }
+            return (h ^ (h >>> 16)) & (SIZE - 1);
+        }
+
+        IsoValue<Date> get(DateTimeParseInfo owner, byte[] buf, int pos, int len, boolean binary,
+                           TimeZone zone, long now) {
+            final long second = Math.floorDiv(now, 1000L);
+            lookupSecond = second;
+            final int i = slot(owner, buf, pos, len);
+            if (owners[i] != owner || seconds[i] != second || binaries[i] != binary
+                    || lengths[i] != len || zones[i] != zone) {
+                return null;
+            }
+            final byte[] key = keys[i];
+            for (int j = 0; j < len; j++) {
+                if (key[j] != buf[pos + j]) {
+                    return null;
+                }
+            }
+            long time = times[i];
+            if (owner.type == IsoType.TIME || owner.type == IsoType.DATE_EXP) {
+                //These take the milliseconds from the current time
+                time += Math.floorMod(now, 1000L) - Math.floorMod(time, 1000L);
+            }
+            final IsoValue<Date> v = new IsoValue<>(owner.type, new Date(time), null);
+            if (valueZones[i] != null) {
+                v.setTimeZone(valueZones[i]);
+            }
+            return v;
+        }
+
+        void put(DateTimeParseInfo owner, byte[] buf, int pos, int len, boolean binary,
+                 TimeZone zone, long now, IsoValue<Date> value) {
+            final long second = Math.floorDiv(now, 1000L);
+            if (second != lookupSecond || len > 16 || value == null || value.getValue() == null) {
+                //The second changed while decoding, so we don't know which one the value is for
+                return;
+            }
+            final int i = slot(owner, buf, pos, len);
+            owners[i] = owner;
+            binaries[i] = binary;
+            System.arraycopy(buf, pos, keys[i], 0, len);
+            lengths[i] = len;
+            zones[i] = zone;
+            seconds[i] = second;
+            times[i] = value.getValue().getTime();
+            valueZones[i] = value.getTimeZone();
+        }
+    }
+
+	@Override
+	public <T> IsoValue<?> parse(
+			final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parse(field, buf, pos, limit, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parseBinary(
+			final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parseBinary(field, buf, pos, limit, custom);
+	}
+
 }
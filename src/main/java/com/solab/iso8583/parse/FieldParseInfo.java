@@ -19,11 +19,16 @@ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
 package com.solab.iso8583.parse;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.text.ParsePosition;
+import java.util.Arrays;
 
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
+import com.solab.iso8583.util.ByteString;
 
 /** This class is used to parse a field from a message buffer. There are concrete subclasses for each IsoType.
  * 
@@ -31,13 +36,22 @@ import com.solab.iso8583.IsoValue;
  */
 public abstract class FieldParseInfo {
 
+	private static final String ASCII_SAMPLE = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz ";
 	protected IsoType type;
 	protected final int length;
 	private String encoding = System.getProperty("file.encoding");
     protected boolean forceStringDecoding;
+    /** Parse NUMERIC and AMOUNT fields into LongValues when possible. */
+    protected boolean primitiveNumbers;
+    /** Parse text fields into ByteStrings when possible. */
+    protected boolean byteStrings;
     private CustomField<?> decoder;
     private Boolean binaryLength;
     private Boolean binaryValue;
+    /** Set when every char in the encoding takes exactly one byte. */
+    private boolean singleByteEncoding;
+    /** Set when ASCII chars are encoded as their ASCII bytes (UTF-8 for example). */
+    private boolean asciiEncoding;
 
 	/** Creates a new instance that parses a value of the specified type, with the specified length.
 	 * The length is only useful for ALPHA and NUMERIC types.
@@ -49,6 +63,7 @@ public abstract class FieldParseInfo {
 		}
 		type = t;
 		length = len;
+		inspectEncoding();
 	}
 
     /** Specified whether length headers for variable-length fields in text mode should
@@ -58,13 +73,39 @@ public abstract class FieldParseInfo {
         forceStringDecoding = flag;
     }
 
+    /** Specifies whether NUMERIC fields of up to 18 digits and AMOUNT fields should be parsed
+     * into LongValues instead of strings, Longs and BigDecimals. Only the NUMERIC and AMOUNT
+     * parsers use this flag. Default is false. */
+    public void setPrimitiveNumbers(boolean flag) {
+        primitiveNumbers = flag;
+    }
+
+    /** Specifies whether ALPHA, LLVAR, LLLVAR and LLLLVAR fields should be parsed into
+     * ByteStrings, which read their chars from the message buffer, instead of Strings.
+     * Only the parsers of those types use this flag. Default is false. */
+    public void setByteStrings(boolean flag) {
+        byteStrings = flag;
+    }
+
 	public void setCharacterEncoding(String value) {
 		encoding = value;
+		inspectEncoding();
 	}
 	public String getCharacterEncoding() {
 		return encoding;
 	}
 
+	/** Returns a ByteString with the specified bytes if this parser creates them and they can
+	 * be read as one char per byte in the character encoding, or else null. */
+	protected ByteString byteString(final byte[] buf, final int pos, final int len) {
+		return byteStrings ? ByteString.view(buf, pos, len, encoding) : null;
+	}
+
+	/** Returns true if the character encoding decodes ASCII bytes as the same characters. */
+	protected boolean isAsciiEncoding() {
+		return asciiEncoding;
+	}
+
 	/** Returns the specified length for the data to be parsed. */
 	public int getLength() {
 		return length;
@@ -123,6 +164,32 @@ public abstract class FieldParseInfo {
 		return parse(field, buf, pos, custom);
 	}
 
+	/** Parses the character data from the buffer and returns the
+	 * IsoValue with the correct data type in it. No data is read at or past the limit,
+	 * so the message can be just a slice of a larger buffer. The built-in parsers override
+	 * this method; by default it calls parse(int, byte[], int, CustomField) with a copy of
+	 * the buffer up to the limit, so a parser that only implements that method copies the
+	 * whole start of the buffer for each field it reads from a slice.
+     * @param field The field index, useful for error reporting.
+     * @param buf The buffer containing the ISO message.
+     * @param pos The starting position for the field data.
+     * @param limit The position right after the last byte of the message in the buffer.
+     * @param custom A CustomField to decode the field. */
+	public <T> IsoValue<?> parse(final int field, byte[] buf, int pos, int limit,
+                                      CustomField<T> custom)
+            throws ParseException, UnsupportedEncodingException {
+		return parse(field, upTo(buf, limit), pos, custom);
+	}
+
+	/** Like parse(int, byte[], int, int, CustomField), but for the method that takes the
+	 * binaryLength flag, which it calls by default with a copy of the buffer up to the limit. */
+	public <T> IsoValue<?> parse(
+			final int field, byte[] buf, int pos, int limit, CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parse(field, upTo(buf, limit), pos, custom, binaryLength);
+	}
+
 	/** Parses binary data from the buffer, creating and returning an IsoValue of the configured
 	 * type and length.
      * @param field The field index, useful for error reporting.
@@ -140,6 +207,58 @@ public abstract class FieldParseInfo {
 		return parseBinary(field, buf, pos, custom);
 	}
 
+	/** Parses binary data from the buffer, creating and returning an IsoValue of the configured
+	 * type and length. No data is read at or past the limit, so the message can be just a
+	 * slice of a larger buffer. Like parse(int, byte[], int, int, CustomField), by default it
+	 * calls parseBinary(int, byte[], int, CustomField) with a copy of the buffer up to the limit.
+     * @param field The field index, useful for error reporting.
+     * @param buf The buffer containing the ISO message.
+     * @param pos The starting position for the field data.
+     * @param limit The position right after the last byte of the message in the buffer.
+     * @param custom A CustomField to decode the field. */
+	public <T> IsoValue<?> parseBinary(final int field, byte[] buf, int pos, int limit,
+                                            CustomField<T> custom)
+            throws ParseException, UnsupportedEncodingException {
+		return parseBinary(field, upTo(buf, limit), pos, custom);
+	}
+
+	/** Like parseBinary(int, byte[], int, int, CustomField), but for the method that takes the
+	 * binaryLength flag, which it calls by default with a copy of the buffer up to the limit. */
+	public <T> IsoValue<?> parseBinary(
+			final int field, byte[] buf, int pos, int limit, CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parseBinary(field, upTo(buf, limit), pos, custom, binaryLength);
+	}
+
+	/** Returns the buffer, or a copy of it cut at the limit, for the methods that don't take one.
+	 * The copy costs as much as the limit, not the field, which is why the built-in parsers
+	 * implement the methods with a limit instead. */
+	private static byte[] upTo(byte[] buf, int limit) {
+		return limit >= buf.length ? buf : Arrays.copyOf(buf, Math.max(limit, 0));
+	}
+
+	/** Parses the field that starts at the cursor's index and moves the cursor past it, so the
+	 * caller doesn't need to encode the value again to know where the next field begins.
+	 * The cursor can be reused for all the fields in a message.
+	 * @param field The field index, useful for error reporting.
+	 * @param buf The buffer containing the ISO message.
+	 * @param cursor The position of the field data; it's set to the position of the next field.
+	 * @param limit The position right after the last byte of the message in the buffer.
+	 * @param custom A CustomField to decode the field.
+	 * @param binaryValue Whether the value is encoded in binary format.
+	 * @param binaryLength Whether the length header (if any) is encoded in binary format. */
+	public <T> IsoValue<?> parseField(final int field, byte[] buf, ParsePosition cursor, int limit,
+									  CustomField<T> custom, final boolean binaryValue, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+		final int pos = cursor.getIndex();
+		final int end = pos + getFieldLength(field, buf, pos, limit, binaryValue, binaryLength);
+		final IsoValue<?> val = binaryValue ? parseBinary(field, buf, pos, end, custom, binaryLength)
+				: parse(field, buf, pos, end, custom, binaryLength);
+		cursor.setIndex(end);
+		return val;
+	}
+
 	/** Returns a new FieldParseInfo instance that can parse the specified type. */
 	public static FieldParseInfo getInstance(IsoType t, int len, String encoding) {
 		FieldParseInfo fpi = null;
@@ -187,6 +306,161 @@ public abstract class FieldParseInfo {
 		return fpi;
 	}
 
+	/** Returns the number of bytes that the field occupies in the buffer, including the length
+	 * header for variable-length types, without creating its value. This allows a message to be
+	 * walked field by field, decoding only the fields that are really needed.
+	 * @param field The field index, useful for error reporting.
+	 * @param buf The buffer containing the ISO message.
+	 * @param pos The starting position for the field data.
+	 * @param limit The position right after the last byte of the message in the buffer.
+	 * @param binaryValue Whether the value is encoded in binary format.
+	 * @param binaryLength Whether the length header (if any) is encoded in binary format. */
+	public int getFieldLength(final int field, byte[] buf, int pos, int limit,
+							  final boolean binaryValue, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+		if (pos < 0) {
+			throw new ParseException(String.format("Invalid %s field %d position %d",
+					type, field, pos), pos);
+		}
+		final int flen = measureField(buf, pos, limit, binaryValue, binaryLength);
+		if (flen < 0) {
+			throw new ParseException(String.format("Insufficient data for %s field %d, pos %d",
+					type, field, pos), pos);
+		}
+		return flen;
+	}
+
+	/** Does the same as getFieldLength, but returns -1 instead of throwing an exception when
+	 * there isn't enough data for the field or its length header is invalid. */
+	public int measureField(byte[] buf, int pos, int limit, final boolean binaryValue, final boolean binaryLength)
+			throws UnsupportedEncodingException {
+		if (pos < 0) {
+			return -1;
+		}
+		final int flen;
+		switch (type) {
+			case NUMERIC:
+				flen = binaryValue ? (length / 2) + (length % 2) : charsToBytes(buf, pos, length, limit);
+				break;
+			case NUM:
+			case ALPHA:
+				flen = binaryValue ? length : charsToBytes(buf, pos, length, limit);
+				break;
+			case BINARY:
+				flen = binaryValue ? length : length * 2;
+				break;
+			case AMOUNT:
+			case DATE10:
+			case DATE4:
+			case DATE_EXP:
+			case TIME:
+			case DATE12:
+			case DATE14:
+			case DATE6:
+				flen = binaryValue ? type.getLength() / 2 : type.getLength();
+				break;
+			case LLVAR:
+			case LLLVAR:
+			case LLLLVAR: {
+				final int hlen = getLengthHeaderSize(binaryLength);
+				final int len = readLengthHeader(buf, pos, limit, binaryLength);
+				final int dlen = len < 0 || binaryValue ? len : charsToBytes(buf, pos + hlen, len, limit);
+				flen = dlen < 0 ? -1 : hlen + dlen;
+				break;
+			}
+			case LLNUM: {
+				final int hlen = getLengthHeaderSize(binaryLength);
+				final int len = readLengthHeader(buf, pos, limit, binaryLength);
+				flen = len < 0 ? -1 : hlen + (binaryValue ? (len / 2) + (len % 2) : len);
+				break;
+			}
+			case LLBIN:
+			case LLLBIN:
+			case LLLLBIN: {
+				final int hlen = getLengthHeaderSize(binaryLength);
+				final int len = readLengthHeader(buf, pos, limit, binaryLength);
+				flen = len < 0 ? -1 : hlen + len;
+				break;
+			}
+			default:
+				return -1;
+		}
+		return flen < 0 || pos + flen > limit ? -1 : flen;
+	}
+
+	/** Returns the number of bytes of the length header for variable-length types, 0 for
+	 * fixed-length types. */
+	public int getLengthHeaderSize(final boolean binaryLength) {
+		if (type == IsoType.LLVAR || type == IsoType.LLBIN || type == IsoType.LLNUM) {
+			return binaryLength ? 1 : 2;
+		} else if (type == IsoType.LLLVAR || type == IsoType.LLLBIN) {
+			return binaryLength ? 2 : 3;
+		} else if (type == IsoType.LLLLVAR || type == IsoType.LLLLBIN) {
+			return binaryLength ? 2 : 4;
+		}
+		return 0;
+	}
+
+	/** Reads the length header of a variable-length field, returning -1 if it's incomplete or invalid. */
+	private int readLengthHeader(byte[] buf, int pos, int limit, final boolean binaryLength)
+			throws UnsupportedEncodingException {
+		final int hlen = getLengthHeaderSize(binaryLength);
+		if (pos + hlen > limit) {
+			return -1;
+		}
+		if (!binaryLength) {
+			try {
+				return Math.max(decodeLength(buf, pos, hlen), -1);
+			} catch (NumberFormatException ex) {
+				return -1;
+			}
+		} else if (hlen == 1) {
+			return (((buf[pos] & 0xf0) >> 4) * 10) + (buf[pos] & 0x0f);
+		}
+		return (((buf[pos] & 0xf0) >> 4) * 1000) + ((buf[pos] & 0x0f) * 100)
+				+ (((buf[pos + 1] & 0xf0) >> 4) * 10) + (buf[pos + 1] & 0x0f);
+	}
+
+	/** Returns the number of bytes used by the specified number of chars in the buffer, starting
+	 * at pos, decoding them with the character encoding only if there could be multi-byte chars.
+	 * Returns -1 if there aren't enough chars before the limit. */
+	protected int charsToBytes(byte[] buf, int pos, int chars, int limit) throws UnsupportedEncodingException {
+		if (pos + chars > limit) {
+			return -1;
+		}
+		if (singleByteEncoding) {
+			return chars;
+		}
+		if (asciiEncoding) {
+			int i = pos;
+			while (i < pos + chars && buf[i] >= 0) {
+				i++;
+			}
+			if (i == pos + chars) {
+				return chars;
+			}
+		}
+		//Same as the parsers do when there are extended characters
+		if (new String(buf, pos, chars, encoding).length() == chars) {
+			return chars;
+		}
+		final String _v = new String(buf, pos, limit - pos, encoding);
+		return _v.length() < chars ? -1 : _v.substring(0, chars).getBytes(encoding).length;
+	}
+
+	private void inspectEncoding() {
+		try {
+			final Charset cs = encoding == null ? Charset.defaultCharset() : Charset.forName(encoding);
+			singleByteEncoding = cs.newEncoder().maxBytesPerChar() <= 1f;
+			asciiEncoding = Arrays.equals(ASCII_SAMPLE.getBytes(cs),
+					ASCII_SAMPLE.getBytes(StandardCharsets.US_ASCII));
+		} catch (IllegalArgumentException | UnsupportedOperationException ex) {
+			//We'll decode the data to find out
+			singleByteEncoding = false;
+			asciiEncoding = false;
+		}
+	}
+
     protected int decodeLength(byte[] buf, int pos, int digits) throws UnsupportedEncodingException {
         if (forceStringDecoding) {
             return Integer.parseInt(new String(buf, pos, digits, encoding), 10);
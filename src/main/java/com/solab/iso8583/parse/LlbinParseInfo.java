@@ -43,19 +43,36 @@ public class LlbinParseInfo extends FieldParseInfo {
 	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
 			throws ParseException, UnsupportedEncodingException {
 
-		return parse(field, buf, pos, custom, false);
+		return parse(field, buf, pos, buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parse(field, buf, pos, limit, custom, false);
 	}
 
 	@Override
-	@SuppressFBWarnings
 	public <T> IsoValue<?> parse(
 			final int field, final byte[] buf, final int pos, final CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parse(field, buf, pos, buf.length, custom, binaryLength);
+	}
+
+	@Override
+	@SuppressFBWarnings
+	public <T> IsoValue<?> parse(
+			final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom, final boolean binaryLength)
             throws ParseException, UnsupportedEncodingException {
 
 		final int lengthLength = binaryLength ? 1 : 2;
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid LLBIN field %d position %d", field, pos), pos);
-		} else if (pos+lengthLength > buf.length) {
+		} else if (pos+lengthLength > limit) {
 			throw new ParseException(String.format("Insufficient LLBIN header field %d",
                     field), pos);
 		}
@@ -66,11 +83,11 @@ public class LlbinParseInfo extends FieldParseInfo {
 			throw new ParseException(String.format("Invalid LLBIN field %d length %d pos %d",
                     field, len, pos), pos);
 		}
-		if (len+pos+lengthLength > buf.length) {
+		if (len+pos+lengthLength > limit) {
 			if (binaryLength) {
 				throw new ParseException(String.format(
 						"Insufficient data for bin LLBIN field %d, pos %d: need %d, only %d available",
-						field, pos, len, buf.length), pos);
+						field, pos, len, limit), pos);
 			} else {
 				throw new ParseException(String.format(
 						"Insufficient data for LLBIN field %d, pos %d (LEN states '%s')",
@@ -90,7 +107,7 @@ public class LlbinParseInfo extends FieldParseInfo {
 				if (binaryLength) {
 					throw new ParseException(String.format(
 							"Insufficient data for bin LLBIN field %d, pos %d: need %d, only %d available",
-							field, pos, len, buf.length), pos);
+							field, pos, len, limit), pos);
 				} else {
 					throw new ParseException(String.format(
 							"Insufficient data for LLBIN field %d, pos %d (LEN states '%s')",
@@ -106,7 +123,7 @@ public class LlbinParseInfo extends FieldParseInfo {
                 if (binaryLength) {
 					throw new ParseException(String.format(
 							"Insufficient data for bin LLBIN field %d, pos %d: need %d, only %d available",
-							field, pos, len, buf.length), pos);
+							field, pos, len, limit), pos);
 				} else {
 					throw new ParseException(String.format(
 							"Insufficient data for LLBIN field %d, pos %d (LEN states '%s')",
@@ -120,19 +137,36 @@ public class LlbinParseInfo extends FieldParseInfo {
 	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
 			throws ParseException, UnsupportedEncodingException {
 
-		return parseBinary(field, buf, pos, custom, true);
+		return parseBinary(field, buf, pos, buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parseBinary(field, buf, pos, limit, custom, true);
 	}
 
 	@Override
-	@SuppressFBWarnings
 	public <T> IsoValue<?> parseBinary(
 			final int field, final byte[] buf, final int pos, final CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parseBinary(field, buf, pos, buf.length, custom, binaryLength);
+	}
+
+	@Override
+	@SuppressFBWarnings
+	public <T> IsoValue<?> parseBinary(
+			final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom, final boolean binaryLength)
             throws ParseException, UnsupportedEncodingException {
 		final int lengthLength = binaryLength ? 1 : 2;
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid bin LLBIN field %d position %d",
                     field, pos), pos);
-		} else if (pos+lengthLength > buf.length) {
+		} else if (pos+lengthLength > limit) {
 			throw new ParseException(String.format("Insufficient bin LLBIN header field %d",
                     field), pos);
 		}
@@ -142,11 +176,11 @@ public class LlbinParseInfo extends FieldParseInfo {
 		if (l < 0) {
 			throw new ParseException(String.format("Invalid bin LLBIN length %d pos %d", l, pos), pos);
 		}
-		if (l+pos+lengthLength > buf.length) {
+		if (l+pos+lengthLength > limit) {
 			if (binaryLength) {
 				throw new ParseException(String.format(
 						"Insufficient data for bin LLBIN field %d, pos %d: need %d, only %d available",
-						field, pos, l, buf.length), pos);
+						field, pos, l, limit), pos);
 			} else {
 				throw new ParseException(String.format(
 						"Insufficient data for LLBIN field %d, pos %d (LEN states '%s')",
@@ -166,7 +200,7 @@ public class LlbinParseInfo extends FieldParseInfo {
 				if (binaryLength) {
 					throw new ParseException(String.format(
 							"Insufficient data for bin LLBIN field %d, pos %d: need %d, only %d available",
-							field, pos, l, buf.length), pos);
+							field, pos, l, limit), pos);
 				} else {
 					throw new ParseException(String.format(
 							"Insufficient data for LLBIN field %d, pos %d (LEN states '%s')",
@@ -27,20 +27,37 @@ public class LlllbinParseInfo  extends FieldParseInfo {
 	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
 			throws ParseException, UnsupportedEncodingException {
 
-		return parse(field, buf, pos, custom, false);
+		return parse(field, buf, pos, buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parse(field, buf, pos, limit, custom, false);
 	}
 
 	@Override
-	@SuppressFBWarnings
 	public <T> IsoValue<?> parse(
 			final int field, final byte[] buf, final int pos, final CustomField<T> custom, final boolean binaryLength)
 			throws ParseException, UnsupportedEncodingException {
 
+		return parse(field, buf, pos, buf.length, custom, binaryLength);
+	}
+
+	@Override
+	@SuppressFBWarnings
+	public <T> IsoValue<?> parse(
+			final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+
 		final int lengthLength = binaryLength ? 2 : 4;
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid LLLLBIN field %d pos %d",
                     field, pos), pos);
-		} else if (pos+lengthLength > buf.length) {
+		} else if (pos+lengthLength > limit) {
 			throw new ParseException(String.format("Insufficient LLLLBIN header field %d",
                     field), pos);
 		}
@@ -51,7 +68,7 @@ public class LlllbinParseInfo  extends FieldParseInfo {
 		if (l < 0) {
 			throw new ParseException(String.format("Invalid LLLLBIN length %d field %d pos %d",
                     l, field, pos), pos);
-		} else if (l+pos+lengthLength > buf.length) {
+		} else if (l+pos+lengthLength > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for LLLLBIN field %d, pos %d", field, pos), pos);
 		}
@@ -85,18 +102,35 @@ public class LlllbinParseInfo  extends FieldParseInfo {
 	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
 			throws ParseException, UnsupportedEncodingException {
 
-		return parseBinary(field, buf, pos, custom, true);
+		return parseBinary(field, buf, pos, buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parseBinary(field, buf, pos, limit, custom, true);
 	}
 
 	@Override
 	public <T> IsoValue<?> parseBinary(
 			final int field, final byte[] buf, final int pos, final CustomField<T> custom, final boolean binaryLength)
 			throws ParseException, UnsupportedEncodingException {
+
+		return parseBinary(field, buf, pos, buf.length, custom, binaryLength);
+	}
+
+	@Override
+	public <T> IsoValue<?> parseBinary(
+			final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
 		final int lengthLength = binaryLength ? 2 : 4;
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid bin LLLLBIN field %d pos %d",
                     field, pos), pos);
-		} else if (pos+lengthLength > buf.length) {
+		} else if (pos+lengthLength > limit) {
             throw new ParseException(String.format("Insufficient LLLLBIN header field %d",
                              field), pos);
 		}
@@ -108,10 +142,10 @@ public class LlllbinParseInfo  extends FieldParseInfo {
             throw new ParseException(String.format("Invalid LLLLBIN length %d field %d pos %d",
                              l, field, pos), pos);
 		}
-		if (l+pos+lengthLength > buf.length) {
+		if (l+pos+lengthLength > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin LLLLBIN field %d, pos %d requires %d, only %d available",
-                    field, pos, l, buf.length-pos+1), pos);
+                    field, pos, l, limit-pos+1), pos);
 		}
 		byte[] _v = new byte[l];
 		System.arraycopy(buf, pos+lengthLength, _v, 0, l);
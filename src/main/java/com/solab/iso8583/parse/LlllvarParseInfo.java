@@ -3,6 +3,7 @@ package com.solab.iso8583.parse;
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
+import com.solab.iso8583.util.ByteString;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
@@ -23,7 +24,15 @@ public class LlllvarParseInfo  extends FieldParseInfo {
 	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
 			throws ParseException, UnsupportedEncodingException {
 
-		return parse(field, buf, pos, custom, false);
+		return parse(field, buf, pos, buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parse(field, buf, pos, limit, custom, false);
 	}
 
 	@Override
@@ -31,11 +40,20 @@ public class LlllvarParseInfo  extends FieldParseInfo {
 			final int field, final byte[] buf, final int pos, final CustomField<T> custom, final boolean binaryLength)
 			throws ParseException, UnsupportedEncodingException {
 
+		return parse(field, buf, pos, buf.length, custom, binaryLength);
+	}
+
+	@Override
+	public <T> IsoValue<?> parse(
+			final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+
 		final int lengthLength = binaryLength ? 2 : 4;
 		if (pos < 0) {
 			throw new ParseException(String.format(
 					"Invalid LLLLVAR field %d %d", field, pos), pos);
-		} else if (pos+lengthLength > buf.length) {
+		} else if (pos+lengthLength > limit) {
 			throw new ParseException(String.format(
 					"Insufficient data for LLLLVAR header, pos %d", pos), pos);
 		}
@@ -46,10 +64,16 @@ public class LlllvarParseInfo  extends FieldParseInfo {
 		if (len < 0) {
 			throw new ParseException(String.format(
                     "Invalid LLLLVAR length %d, field %d pos %d", len, field, pos), pos);
-		} else if (len+pos+lengthLength > buf.length) {
+		} else if (len+pos+lengthLength > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for LLLLVAR field %d, pos %d", field, pos), pos);
 		}
+		if (custom == null && len > 0) {
+			final ByteString view = byteString(buf, pos + lengthLength, len);
+			if (view != null) {
+				return new IsoValue<>(type, view, len, null);
+			}
+		}
 		String _v;
         try {
             _v = len == 0 ? "" : new String(buf, pos + lengthLength, len, getCharacterEncoding());
@@ -62,7 +86,7 @@ public class LlllvarParseInfo  extends FieldParseInfo {
 		// So we create a String from the rest of the buffer, and then cut it to
 		// the specified length.
 		if (_v.length() != len) {
-			_v = new String(buf, pos + lengthLength, buf.length-pos-lengthLength,
+			_v = new String(buf, pos + lengthLength, limit-pos-lengthLength,
 					getCharacterEncoding()).substring(0, len);
 		}
 		if (custom == null) {
@@ -78,18 +102,35 @@ public class LlllvarParseInfo  extends FieldParseInfo {
 	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
 			throws ParseException, UnsupportedEncodingException {
 
-		return parseBinary(field, buf, pos, custom, true);
+		return parseBinary(field, buf, pos, buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parseBinary(field, buf, pos, limit, custom, true);
 	}
 
 	@Override
 	public <T> IsoValue<?> parseBinary(
 			final int field, final byte[] buf, final int pos, final CustomField<T> custom, final boolean binaryLength)
 			throws ParseException, UnsupportedEncodingException {
+
+		return parseBinary(field, buf, pos, buf.length, custom, binaryLength);
+	}
+
+	@Override
+	public <T> IsoValue<?> parseBinary(
+			final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
 		final int lengthLength = binaryLength ? 2 : 4;
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid bin LLLLVAR field %d pos %d",
                     field, pos), pos);
-		} else if (pos+lengthLength > buf.length) {
+		} else if (pos+lengthLength > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin LLLLVAR header, field %d pos %d",
 					field, pos), pos);
@@ -102,10 +143,16 @@ public class LlllvarParseInfo  extends FieldParseInfo {
 			throw new ParseException(String.format(
                     "Invalid bin LLLLVAR length %d, field %d pos %d", len, field, pos), pos);
 		}
-		if (len+pos+lengthLength > buf.length) {
+		if (len+pos+lengthLength > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin LLLLVAR field %d, pos %d", field, pos), pos);
 		}
+		if (custom == null && len > 0) {
+			final ByteString view = byteString(buf, pos + lengthLength, len);
+			if (view != null) {
+				return new IsoValue<>(type, view, null);
+			}
+		}
 		if (custom == null) {
 			return new IsoValue<>(type, new String(buf, pos + lengthLength, len,
 					getCharacterEncoding()), null);
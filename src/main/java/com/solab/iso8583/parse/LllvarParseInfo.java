@@ -24,6 +24,7 @@ import java.text.ParseException;
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
+import com.solab.iso8583.util.ByteString;
 
 /** This class is used to parse fields of type LLLVAR.
  * 
@@ -40,7 +41,15 @@ public class LllvarParseInfo extends FieldParseInfo {
 	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
 			throws ParseException, UnsupportedEncodingException {
 
-		return parse(field, buf, pos, custom, false);
+		return parse(field, buf, pos, buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parse(field, buf, pos, limit, custom, false);
 	}
 
 	@Override
@@ -48,11 +57,20 @@ public class LllvarParseInfo extends FieldParseInfo {
 			final int field, final byte[] buf, final int pos, final CustomField<T> custom, final boolean binaryLength)
 			throws ParseException, UnsupportedEncodingException {
 
+		return parse(field, buf, pos, buf.length, custom, binaryLength);
+	}
+
+	@Override
+	public <T> IsoValue<?> parse(
+			final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+
 		final int lengthLength = binaryLength ? 2 : 3;
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid LLLVAR field %d pos %d",
                     field, pos), pos);
-		} else if (pos+lengthLength > buf.length) {
+		} else if (pos+lengthLength > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for LLLVAR header field %d pos %d", field, pos), pos);
 		}
@@ -62,10 +80,16 @@ public class LllvarParseInfo extends FieldParseInfo {
 		if (len < 0) {
             throw new ParseException(String.format("Invalid LLLVAR length %d field %d pos %d",
                     len, field, pos), pos);
-		} else if (len+pos+lengthLength > buf.length) {
+		} else if (len+pos+lengthLength > limit) {
 			throw new ParseException(String.format("Insufficient data for LLLVAR field %d, pos %d len %d",
                     field, pos, len), pos);
 		}
+		if (custom == null && len > 0) {
+			final ByteString view = byteString(buf, pos + lengthLength, len);
+			if (view != null) {
+				return new IsoValue<>(type, view, len, null);
+			}
+		}
 		String _v;
         try {
             _v = len == 0 ? "" : new String(buf, pos + lengthLength, len, getCharacterEncoding());
@@ -77,7 +101,7 @@ public class LllvarParseInfo extends FieldParseInfo {
 		//buffer, there are probably some extended characters. So we create a String from
 		//the rest of the buffer, and then cut it to the specified length.
 		if (_v.length() != len) {
-			_v = new String(buf, pos + lengthLength, buf.length-pos-lengthLength,
+			_v = new String(buf, pos + lengthLength, limit-pos-lengthLength,
 					getCharacterEncoding()).substring(0, len);
 		}
 		if (custom == null) {
@@ -94,17 +118,34 @@ public class LllvarParseInfo extends FieldParseInfo {
 	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
 			throws ParseException, UnsupportedEncodingException {
 
-		return parseBinary(field, buf, pos, custom, true);
+		return parseBinary(field, buf, pos, buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parseBinary(field, buf, pos, limit, custom, true);
 	}
 
 	@Override
 	public <T> IsoValue<?> parseBinary(
 			final int field, final byte[] buf, final int pos, final CustomField<T> custom, final boolean binaryLength)
 			throws ParseException, UnsupportedEncodingException {
+
+		return parseBinary(field, buf, pos, buf.length, custom, binaryLength);
+	}
+
+	@Override
+	public <T> IsoValue<?> parseBinary(
+			final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
 		final int lengthLength = binaryLength ? 2 : 3;
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid bin LLLVAR field %d pos %d", field, pos), pos);
-		} else if (pos+lengthLength > buf.length) {
+		} else if (pos+lengthLength > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin LLLVAR header, field %d pos %d", field, pos), pos);
 		}
@@ -114,10 +155,16 @@ public class LllvarParseInfo extends FieldParseInfo {
 		if (len < 0) {
 			throw new ParseException(String.format(
                     "Invalid bin LLLVAR length %d, field %d pos %d", len, field, pos), pos);
-		} else if (len+pos+lengthLength > buf.length) {
+		} else if (len+pos+lengthLength > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin LLLVAR field %d, pos %d", field, pos), pos);
 		}
+		if (custom == null && len > 0) {
+			final ByteString view = byteString(buf, pos + lengthLength, len);
+			if (view != null) {
+				return new IsoValue<>(type, view, null);
+			}
+		}
 		if (custom == null) {
 			return new IsoValue<>(type, new String(buf, pos + lengthLength, len, getCharacterEncoding()), null);
 		} else {
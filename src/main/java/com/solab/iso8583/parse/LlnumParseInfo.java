@@ -41,7 +41,15 @@ public class LlnumParseInfo extends FieldParseInfo {
 	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
 			throws ParseException, UnsupportedEncodingException {
 
-		return parse(field, buf, pos, custom, false);
+		return parse(field, buf, pos, buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parse(field, buf, pos, limit, custom, false);
 	}
 
 	@Override
@@ -49,11 +57,20 @@ public class LlnumParseInfo extends FieldParseInfo {
 			final int field, final byte[] buf, final int pos, final CustomField<T> custom, final boolean binaryLength)
 			throws ParseException, UnsupportedEncodingException {
 
+		return parse(field, buf, pos, buf.length, custom, binaryLength);
+	}
+
+	@Override
+	public <T> IsoValue<?> parse(
+			final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+
 		final int lengthLength = binaryLength ? 1 : 2;
 		if (pos < 0) {
 			throw new ParseException(String.format(
 					"Invalid LLVAR field %d %d", field, pos), pos);
-		} else if (pos+lengthLength > buf.length) {
+		} else if (pos+lengthLength > limit) {
 			throw new ParseException(String.format(
 					"Insufficient data for LLVAR header, pos %d", pos), pos);
 		}
@@ -63,7 +80,7 @@ public class LlnumParseInfo extends FieldParseInfo {
 		if (len < 0) {
 			throw new ParseException(String.format(
                     "Invalid LLVAR length %d, field %d pos %d", len, field, pos), pos);
-		} else if (len+pos+lengthLength > buf.length) {
+		} else if (len+pos+lengthLength > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for LLVAR field %d, pos %d len %d",
                     field, pos, len), pos);
@@ -81,7 +98,7 @@ public class LlnumParseInfo extends FieldParseInfo {
 		// So we create a String from the rest of the buffer, and then cut it to
 		// the specified length.
 		if (_v.length() != len) {
-			_v = new String(buf, pos + lengthLength, buf.length-pos-lengthLength,
+			_v = new String(buf, pos + lengthLength, limit-pos-lengthLength,
 					getCharacterEncoding()).substring(0, len);
 		}
 		if (custom == null) {
@@ -97,7 +114,15 @@ public class LlnumParseInfo extends FieldParseInfo {
     public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
             throws ParseException, UnsupportedEncodingException {
 
-        return parseBinary(field, buf, pos, custom, true);
+        return parseBinary(field, buf, pos, buf.length, custom);
+    }
+
+    @Override
+    public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos, final int limit,
+            final CustomField<T> custom)
+            throws ParseException, UnsupportedEncodingException {
+
+        return parseBinary(field, buf, pos, limit, custom, true);
     }
 
     @Override
@@ -105,12 +130,21 @@ public class LlnumParseInfo extends FieldParseInfo {
             final int field, final byte[] buf, final int pos, final CustomField<T> custom, final boolean binaryLength)
             throws ParseException, UnsupportedEncodingException {
 
+        return parseBinary(field, buf, pos, buf.length, custom, binaryLength);
+    }
+
+    @Override
+    public <T> IsoValue<?> parseBinary(
+            final int field, final byte[] buf, final int pos, final int limit,
+            final CustomField<T> custom, final boolean binaryLength)
+            throws ParseException, UnsupportedEncodingException {
+
 		final int lengthLength = binaryLength ? 1 : 2;
 
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid bin LLNUM field %d pos %d",
                     field, pos), pos);
-		} else if (pos+lengthLength > buf.length) {
+		} else if (pos+lengthLength > limit) {
 			throw new ParseException(String.format(
 					"Insufficient data for bin LLNUM header, field %d pos %d",
 					field, pos), pos);
@@ -126,7 +160,7 @@ public class LlnumParseInfo extends FieldParseInfo {
 		int originLength = len;
 		len = len / 2 + len % 2;
 
-		if (len+pos+lengthLength > buf.length) {
+		if (len+pos+lengthLength > limit) {
 			throw new ParseException(String.format(
 					"Insufficient data for bin LLNUM field %d, pos %d", field, pos), pos);
 		}
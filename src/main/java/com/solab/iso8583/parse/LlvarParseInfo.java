@@ -24,6 +24,7 @@ import java.text.ParseException;
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
+import com.solab.iso8583.util.ByteString;
 
 /** This class is used to parse fields of type LLVAR.
  *
@@ -39,7 +40,15 @@ public class LlvarParseInfo extends FieldParseInfo {
 	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
 			throws ParseException, UnsupportedEncodingException {
 
-		return parse(field, buf, pos, custom, false);
+		return parse(field, buf, pos, buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parse(field, buf, pos, limit, custom, false);
 	}
 
 	@Override
@@ -47,11 +56,20 @@ public class LlvarParseInfo extends FieldParseInfo {
 			final int field, final byte[] buf, final int pos, final CustomField<T> custom, final boolean binaryLength)
 			throws ParseException, UnsupportedEncodingException {
 
+		return parse(field, buf, pos, buf.length, custom, binaryLength);
+	}
+
+	@Override
+	public <T> IsoValue<?> parse(
+			final int field, final byte[] buf, final int pos, final int limit,
+			final CustomField<T> custom, final boolean binaryLength)
+			throws ParseException, UnsupportedEncodingException {
+
 		final int lengthLength = binaryLength ? 1 : 2;
 		if (pos < 0) {
 			throw new ParseException(String.format(
 					"Invalid LLVAR field %d %d", field, pos), pos);
-		} else if (pos+lengthLength > buf.length) {
+		} else if (pos+lengthLength > limit) {
 			throw new ParseException(String.format(
 					"Insufficient data for LLVAR header, pos %d", pos), pos);
 		}
@@ -61,11 +79,17 @@ public class LlvarParseInfo extends FieldParseInfo {
 		if (len < 0) {
 			throw new ParseException(String.format(
                     "Invalid LLVAR length %d, field %d pos %d", len, field, pos), pos);
-		} else if (len+pos+lengthLength > buf.length) {
+		} else if (len+pos+lengthLength > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for LLVAR field %d, pos %d len %d",
                     field, pos, len), pos);
 		}
+		if (custom == null && len > 0) {
+			final ByteString view = byteString(buf, pos + lengthLength, len);
+			if (view != null) {
+				return new IsoValue<>(type, view, len, null);
+			}
+		}
 		String _v;
         try {
             _v = len == 0 ? "" : new String(buf, pos + lengthLength, len, getCharacterEncoding());
@@ -79,7 +103,7 @@ public class LlvarParseInfo extends FieldParseInfo {
 		// So we create a String from the rest of the buffer, and then cut it to
 		// the specified length.
 		if (_v.length() != len) {
-			_v = new String(buf, pos + lengthLength, buf.length-pos-lengthLength,
+			_v = new String(buf, pos + lengthLength, limit-pos-lengthLength,
 					getCharacterEncoding()).substring(0, len);
 		}
 		if (custom == null) {
@@ -95,18 +119,35 @@ public class LlvarParseInfo extends FieldParseInfo {
     public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
             throws ParseException, UnsupportedEncodingException {
 
-        return parseBinary(field, buf, pos, custom, true);
+        return parseBinary(field, buf, pos, buf.length, custom);
+    }
+
+    @Override
+    public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos, final int limit,
+            final CustomField<T> custom)
+            throws ParseException, UnsupportedEncodingException {
+
+        return parseBinary(field, buf, pos, limit, custom, true);
     }
 
     @Override
     public <T> IsoValue<?> parseBinary(
             final int field, final byte[] buf, final int pos, final CustomField<T> custom, final boolean binaryLength)
             throws ParseException, UnsupportedEncodingException {
+
+        return parseBinary(field, buf, pos, buf.length, custom, binaryLength);
+    }
+
+    @Override
+    public <T> IsoValue<?> parseBinary(
+            final int field, final byte[] buf, final int pos, final int limit,
+            final CustomField<T> custom, final boolean binaryLength)
+            throws ParseException, UnsupportedEncodingException {
         final int lengthLength = binaryLength ? 1 : 2;
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid bin LLVAR field %d pos %d",
                     field, pos), pos);
-		} else if (pos+lengthLength > buf.length) {
+		} else if (pos+lengthLength > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin LLVAR header, field %d pos %d",
 					field, pos), pos);
@@ -118,10 +159,16 @@ public class LlvarParseInfo extends FieldParseInfo {
 			throw new ParseException(String.format(
                     "Invalid bin LLVAR length %d, field %d pos %d", len, field, pos), pos);
 		}
-		if (len+pos+lengthLength > buf.length) {
+		if (len+pos+lengthLength > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin LLVAR field %d, pos %d", field, pos), pos);
 		}
+		if (custom == null && len > 0) {
+			final ByteString view = byteString(buf, pos + lengthLength, len);
+			if (view != null) {
+				return new IsoValue<>(type, view, null);
+			}
+		}
 		if (custom == null) {
 			return new IsoValue<>(type, new String(buf, pos +lengthLength, len,
 					getCharacterEncoding()), null);
@@ -37,13 +37,20 @@ public class NumParseInfo extends AlphaNumericFieldParseInfo {
 		super(IsoType.NUM, len / 2 + (len % 2));
 	}
 	@Override
-	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos,
+	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parseBinary(field, buf, pos, buf.length, custom);
+	}
+
+	@Override
+	public <T> IsoValue<?> parseBinary(final int field, final byte[] buf, final int pos, final int limit,
 									   final CustomField<T> custom)
 			throws ParseException, UnsupportedEncodingException {
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid bin ALPHA field %d position %d",
 					field, pos), pos);
-		} else if (pos+length > buf.length) {
+		} else if (pos+length > limit) {
 			throw new ParseException(String.format(
 					"Insufficient data for bin %s field %d of length %d, pos %d",
 					type, field, length, pos), pos);
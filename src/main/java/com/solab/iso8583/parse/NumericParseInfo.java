@@ -18,13 +18,16 @@ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
 */
 package com.solab.iso8583.parse;
 
+import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
 import java.text.ParseException;
 
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
+import com.solab.iso8583.LongValue;
 import com.solab.iso8583.util.Bcd;
+import com.solab.iso8583.util.Digits;
 
 /** This class is used to parse NUMERIC fields.
  * 
@@ -36,22 +39,51 @@ public class NumericParseInfo extends AlphaNumericFieldParseInfo {
 		super(IsoType.NUMERIC, len);
 	}
 
+    @Override
+	public <T> IsoValue<?> parse(final int field, final byte[] buf, final int pos, final int limit,
+                             final CustomField<T> custom)
+            throws ParseException, UnsupportedEncodingException {
+		if (primitiveNumbers && custom == null && length < 19 && isAsciiEncoding()
+				&& pos >= 0 && pos + length <= limit) {
+			long v = 0;
+			int i = pos;
+			for (; i < pos + length && buf[i] >= '0' && buf[i] <= '9'; i++) {
+				v = v * 10 + buf[i] - '0';
+			}
+			if (i == pos + length) {
+				return new LongValue(IsoType.NUMERIC, v, length);
+			}
+		}
+		//Anything that isn't just digits is kept as a string
+		return super.parse(field, buf, pos, limit, custom);
+	}
+
+    @Override
+    public <T> IsoValue<Number> parseBinary(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+            throws ParseException {
+
+        return parseBinary(field, buf, pos, buf.length, custom);
+    }
+
     @Override
 	public <T> IsoValue<Number> parseBinary(final int field, final byte[] buf,
-                                        final int pos, final CustomField<T> custom)
+                                        final int pos, final int limit, final CustomField<T> custom)
             throws ParseException {
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid bin NUMERIC field %d pos %d",
                     field, pos), pos);
-		} else if (pos+(length/2) > buf.length) {
+		} else if (pos+(length/2) > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin %s field %d of length %d, pos %d",
 				type, field, length, pos), pos);
 		}
 		//A long covers up to 18 digits
 		if (length < 19) {
-			return new IsoValue<Number>(IsoType.NUMERIC, Bcd.decodeToLong(buf, pos, length),
-                length, null);
+			final long v = Bcd.decodeToLong(buf, pos, length);
+			if (primitiveNumbers && Digits.fits(v, length)) {
+				return new LongValue(IsoType.NUMERIC, v, length);
+			}
+			return new IsoValue<Number>(IsoType.NUMERIC, v, length, null);
 		} else {
 			//Use a BigInteger
             try {
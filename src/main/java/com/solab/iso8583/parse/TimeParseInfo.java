@@ -20,12 +20,12 @@ package com.solab.iso8583.parse;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
-import java.util.Calendar;
 import java.util.Date;
 
 import com.solab.iso8583.CustomField;
 import com.solab.iso8583.IsoType;
 import com.solab.iso8583.IsoValue;
+import com.solab.iso8583.util.DateCodec;
 
 /** This class is used to parse TIME fields.
  * 
@@ -38,54 +38,79 @@ public class TimeParseInfo extends DateTimeParseInfo {
 		super(IsoType.TIME, 6);
 	}
 
+	@Override
+	public <T> IsoValue<Date> parse(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+			throws ParseException, UnsupportedEncodingException {
+
+		return parse(field, buf, pos, buf.length, custom);
+	}
+
 	@Override
 	public <T> IsoValue<Date> parse(final int field, final byte[] buf,
-                                final int pos, final CustomField<T> custom)
+                                final int pos, final int limit, final CustomField<T> custom)
             throws ParseException, UnsupportedEncodingException {
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid TIME field %d pos %d",
                     field, pos), pos);
-		} else if (pos+6 > buf.length) {
+		} else if (pos+6 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for TIME field %d, pos %d", field, pos), pos);
 		}
-		Calendar cal = Calendar.getInstance();
+		final IsoValue<Date> cached = getCachedValue(buf, pos, 6, false);
+		if (cached != null) {
+			return cached;
+		}
+		//The date and milliseconds are taken from the current time
+		final long now = localNow();
+		final long today = ymd(now);
+		final int hour, minute, second;
         if (forceStringDecoding) {
-            cal.set(Calendar.HOUR_OF_DAY, Integer.parseInt(new String(buf, pos, 2, getCharacterEncoding()), 10));
-            cal.set(Calendar.MINUTE, Integer.parseInt(new String(buf, pos+2, 2, getCharacterEncoding()), 10));
-            cal.set(Calendar.SECOND, Integer.parseInt(new String(buf, pos+4, 2, getCharacterEncoding()), 10));
+            hour = Integer.parseInt(new String(buf, pos, 2, getCharacterEncoding()), 10);
+            minute = Integer.parseInt(new String(buf, pos+2, 2, getCharacterEncoding()), 10);
+            second = Integer.parseInt(new String(buf, pos+4, 2, getCharacterEncoding()), 10);
         } else {
-            cal.set(Calendar.HOUR_OF_DAY, ((buf[pos] - 48) * 10) + buf[pos + 1] - 48);
-            cal.set(Calendar.MINUTE, ((buf[pos + 2] - 48) * 10) + buf[pos + 3] - 48);
-            cal.set(Calendar.SECOND, ((buf[pos + 4] - 48) * 10) + buf[pos + 5] - 48);
+            hour = ((buf[pos] - 48) * 10) + buf[pos + 1] - 48;
+            minute = ((buf[pos + 2] - 48) * 10) + buf[pos + 3] - 48;
+            second = ((buf[pos + 4] - 48) * 10) + buf[pos + 5] - 48;
         }
-        return createValue(cal, false);
+        return cacheValue(buf, pos, 6, false,
+                createValue((int)(today / 10000), (int)(today / 100 % 100), (int)(today % 100),
+                hour, minute, second, (int)Math.floorMod(now, 1000L), false));
+	}
+
+	@Override
+	public <T> IsoValue<Date> parseBinary(final int field, final byte[] buf, final int pos, final CustomField<T> custom)
+			throws ParseException {
+
+		return parseBinary(field, buf, pos, buf.length, custom);
 	}
 
 	@Override
 	public <T> IsoValue<Date> parseBinary(final int field, final byte[] buf,
-                                      final int pos, final CustomField<T> custom)
+                                      final int pos, final int limit, final CustomField<T> custom)
             throws ParseException {
 		if (pos < 0) {
 			throw new ParseException(String.format("Invalid bin TIME field %d pos %d",
                     field, pos), pos);
-		} else if (pos+3 > buf.length) {
+		} else if (pos+3 > limit) {
 			throw new ParseException(String.format(
                     "Insufficient data for bin TIME field %d, pos %d", field, pos), pos);
 		}
+		final IsoValue<Date> cached = getCachedValue(buf, pos, 3, true);
+		if (cached != null) {
+			return cached;
+		}
 		int[] tens = new int[3];
 		int start = 0;
 		for (int i = pos; i < pos + 3; i++) {
 			tens[start++] = (((buf[i] & 0xf0) >> 4) * 10) + (buf[i] & 0x0f);
 		}
-		Calendar cal = Calendar.getInstance();
-		cal.set(Calendar.HOUR_OF_DAY, tens[0]);
-		cal.set(Calendar.MINUTE, tens[1]);
-		cal.set(Calendar.SECOND, tens[2]);
-        if (tz != null) {
-            cal.setTimeZone(tz);
-        }
-		return new IsoValue<Date>(type, cal.getTime(), null);
+		final long now = localNow();
+		final long today = ymd(now);
+		return cacheValue(buf, pos, 3, true,
+				new IsoValue<Date>(type, new Date(DateCodec.toEpochMillis(tz, (int)(today / 10000),
+				(int)(today / 100 % 100), (int)(today % 100), tens[0], tens[1], tens[2],
+				(int)Math.floorMod(now, 1000L))), null));
 	}
 
 }
@@ -0,0 +1,146 @@
+/*
+ * j8583 A Java implementation of the ISO8583 protocol
+ * Copyright (C) 2007 Enrique Zamudio Lopez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.solab.iso8583.util;
+
+/** Utility class to encode and decode ISO8583 bitmaps held in two longs, the primary and
+ * secondary bitmap. Bits are in the same order as in the message: the most significant bit
+ * of the primary bitmap is field 1 (which indicates the presence of the secondary bitmap)
+ * and the most significant bit of the secondary bitmap is field 65.
+ */
+public final class BitmapCodec {
+
+	private static final byte[] HEX = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F' };
+	/** The value of each hex digit, indexed by its ASCII code; -1 for anything else. */
+	private static final byte[] NIBBLES = new byte[128];
+	static {
+		for (int i = 0; i < NIBBLES.length; i++) {
+			NIBBLES[i] = -1;
+		}
+		for (int i = 0; i < 10; i++) {
+			NIBBLES['0' + i] = (byte)i;
+		}
+		for (int i = 0; i < 6; i++) {
+			NIBBLES['A' + i] = (byte)(10 + i);
+			NIBBLES['a' + i] = (byte)(10 + i);
+		}
+	}
+
+	private BitmapCodec(){}
+
+	/** Returns the bit for the specified field (1 to 128), within the bitmap that contains it. */
+	public static long bit(int field) {
+		return 1L << ((64 - field) & 63);
+	}
+
+	/** Returns the first field number from the specified one onwards that is set in the bitmaps,
+	 * or -1 if there are no more fields. Field 1 is only returned when starting from 1. */
+	public static int nextField(long primary, long secondary, int from) {
+		if (from <= 64) {
+			final long w = primary & (-1L >>> (from - 1));
+			if (w != 0) {
+				return Long.numberOfLeadingZeros(w) + 1;
+			}
+			from = 65;
+		}
+		if (from <= 128) {
+			final long w = secondary & (-1L >>> (from - 65));
+			if (w != 0) {
+				return Long.numberOfLeadingZeros(w) + 65;
+			}
+		}
+		return -1;
+	}
+
+	/** Reads a bitmap from 8 bytes in the buffer. */
+	public static long decodeBinary(byte[] buf, int pos) {
+		long w = 0;
+		for (int i = pos; i < pos + 8; i++) {
+			w = (w << 8) | (buf[i] & 0xff);
+		}
+		return w;
+	}
+
+	/** Writes the bitmap as 8 bytes in the buffer. */
+	public static void encodeBinary(long bitmap, byte[] buf, int pos) {
+		for (int i = pos + 7; i >= pos; i--) {
+			buf[i] = (byte)bitmap;
+			bitmap >>>= 8;
+		}
+	}
+
+	/** Returns true if there are 16 valid hex digits in the buffer, starting at the specified position. */
+	public static boolean isHex(byte[] buf, int pos) {
+		int n = 0;
+		for (int i = pos; i < pos + 16; i++) {
+			n |= buf[i] < 0 ? -1 : NIBBLES[buf[i]];
+		}
+		return n >= 0;
+	}
+
+	/** Returns true if there are 16 valid hex digits in the string, starting at the specified position. */
+	public static boolean isHex(CharSequence chars, int pos) {
+		if (chars.length() < pos + 16) {
+			return false;
+		}
+		int n = 0;
+		for (int i = pos; i < pos + 16; i++) {
+			final char c = chars.charAt(i);
+			n |= c < 128 ? NIBBLES[c] : -1;
+		}
+		return n >= 0;
+	}
+
+	/** Reads a bitmap from 16 hex digits in the buffer.
+	 * @throws NumberFormatException if there's an invalid hex digit. */
+	public static long decodeHex(byte[] buf, int pos) {
+		long w = 0;
+		for (int i = pos; i < pos + 16; i++) {
+			final int n = buf[i] < 0 ? -1 : NIBBLES[buf[i]];
+			if (n < 0) {
+				throw new NumberFormatException(String.format("Invalid hex digit 0x%02x at %d", buf[i] & 0xff, i));
+			}
+			w = (w << 4) | n;
+		}
+		return w;
+	}
+
+	/** Reads a bitmap from 16 hex digits in the string.
+	 * @throws NumberFormatException if there's an invalid hex digit. */
+	public static long decodeHex(CharSequence chars, int pos) {
+		long w = 0;
+		for (int i = pos; i < pos + 16; i++) {
+			final char c = chars.charAt(i);
+			final int n = c < 128 ? NIBBLES[c] : -1;
+			if (n < 0) {
+				throw new NumberFormatException(String.format("Invalid hex digit '%s' at %d", c, i));
+			}
+			w = (w << 4) | n;
+		}
+		return w;
+	}
+
+	/** Writes the bitmap as 16 uppercase hex digits (ASCII) in the buffer. */
+	public static void encodeHex(long bitmap, byte[] buf, int pos) {
+		for (int i = pos + 15; i >= pos; i--) {
+			buf[i] = HEX[(int)bitmap & 15];
+			bitmap >>>= 4;
+		}
+	}
+
+}
@@ -0,0 +1,216 @@
+/*
+ * j8583 A Java implementation of the ISO8583 protocol
+ * Copyright (C) 2007 Enrique Zamudio Lopez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.solab.iso8583.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** An immutable CharSequence that reads its chars straight from the bytes of a message,
+ * so that text fields can be parsed without creating a String for each one. It can only
+ * be created when every byte decodes to exactly one char: that is, for single-byte encodings,
+ * or for text that is all ASCII in an encoding like UTF-8. The chars are decoded when they're
+ * read, and the original bytes can be written back as they are.
+ * The buffer is referenced, not copied, so it must not be modified while the value is in use.
+ * The hash code is the same as the String's, but equals() is only true for other ByteStrings;
+ * use contentEquals() to compare with a String or any other CharSequence.
+ * Serializing a ByteString writes it as a String.
+ */
+public final class ByteString implements CharSequence, Serializable {
+
+    private static final long serialVersionUID = 1L;
+    /** The decoding table for ASCII bytes in encodings that aren't single-byte. */
+    private static final char[] ASCII = new char[128];
+    private static final char[] NONE = new char[0];
+    private static final ConcurrentHashMap<Charset, char[]> TABLES = new ConcurrentHashMap<>();
+
+    static {
+        for (int i = 0; i < ASCII.length; i++) {
+            ASCII[i] = (char)i;
+        }
+    }
+
+    private final byte[] buf;
+    private final int offset;
+    private final int length;
+    private final transient Charset charset;
+    private final char[] chars;
+    private int hash;
+    private String string;
+
+    private ByteString(byte[] buf, int offset, int length, Charset charset, char[] chars) {
+        this.buf = buf;
+        this.offset = offset;
+        this.length = length;
+        this.charset = charset;
+        this.chars = chars;
+    }
+
+    /** Returns a view of the specified bytes, decoded with the specified encoding,
+     * or null if some of the bytes don't decode to a single char in that encoding.
+     * @param buf The buffer with the text.
+     * @param offset The position of the text in the buffer.
+     * @param length The number of bytes of the text.
+     * @param encoding The character encoding, or null for the default one. */
+    public static ByteString view(byte[] buf, int offset, int length, String encoding) {
+        if (offset < 0 || length < 0 || offset + length > buf.length) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "Invalid offset %d and length %d for a buffer of %d bytes", offset, length, buf.length));
+        }
+        final Charset cs = EncodedLength.charset(encoding);
+        final char[] table = table(cs);
+        if (table.length < 256) {
+            if (table.length == 0) {
+                return null;
+            }
+            for (int i = offset; i < offset + length; i++) {
+                if (buf[i] < 0) {
+                    return null;
+                }
+            }
+        }
+        return new ByteString(buf, offset, length, cs, table);
+    }
+
+    /** Returns the chars for each byte in the charset: 256 for single-byte encodings, 128 for
+     * encodings that read ASCII bytes as ASCII chars, and none for the rest. */
+    private static char[] table(Charset cs) {
+        char[] table = TABLES.get(cs);
+        if (table == null) {
+            final byte[] all = new byte[256];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = (byte)i;
+            }
+            final String s = new String(all, cs);
+            if (cs.canEncode() && cs.newEncoder().maxBytesPerChar() == 1f && s.length() == all.length) {
+                table = s.toCharArray();
+            } else if (EncodedLength.isAsciiCompatible(cs.name())) {
+                table = ASCII;
+            } else {
+                table = NONE;
+            }
+            TABLES.putIfAbsent(cs, table);
+        }
+        return table;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Invalid index " + index);
+        }
+        return chars[buf[offset + index] & 0xff];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException(String.format("Invalid range %d to %d", start, end));
+        }
+        return new ByteString(buf, offset + start, end - start, charset, chars);
+    }
+
+    /** Returns the encoding of the bytes. */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /** Returns true if writing the chars in the specified encoding produces the original bytes,
+     * so they can be written with writeTo() instead. */
+    public boolean isEncodedAs(String encoding) {
+        final Charset cs = EncodedLength.charset(encoding);
+        return cs.equals(charset) || (chars == ASCII && EncodedLength.isAsciiCompatible(encoding));
+    }
+
+    /** Writes the original bytes to the stream. */
+    public void writeTo(OutputStream outs) throws IOException {
+        outs.write(buf, offset, length);
+    }
+
+    /** Returns true if the other sequence has the same chars. Two ByteStrings in the same
+     * encoding are compared by their bytes. */
+    public boolean contentEquals(CharSequence other) {
+        if (other == this) {
+            return true;
+        }
+        if (other == null || other.length() != length) {
+            return false;
+        }
+        if (other instanceof ByteString && ((ByteString)other).chars == chars) {
+            final ByteString bs = (ByteString)other;
+            for (int i = 0; i < length; i++) {
+                if (buf[offset + i] != bs.buf[bs.offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[buf[offset + i] & 0xff] != other.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ByteString && contentEquals((ByteString)other);
+    }
+
+    /** Returns the same hash code as the String with the same chars. */
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            for (int i = offset; i < offset + length; i++) {
+                h = 31 * h + chars[buf[i] & 0xff];
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    /** Returns the chars as a String, which is created the first time it's requested. */
+    @Override
+    public String toString() {
+        String s = string;
+        if (s == null) {
+            final char[] c = new char[length];
+            for (int i = 0; i < length; i++) {
+                c[i] = chars[buf[offset + i] & 0xff];
+            }
+            s = new String(c);
+            string = s;
+        }
+        return s;
+    }
+
+    private Object writeReplace() {
+        return toString();
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * j8583 A Java implementation of the ISO8583 protocol
+ * Copyright (C) 2007 Enrique Zamudio Lopez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.solab.iso8583.util;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/** A clock that reads the system time once per tick, in a single daemon thread, so that
+ * the threads that ask for the time only read a volatile field. The time it returns can be
+ * behind the system time by up to the resolution. Closing the clock stops the thread;
+ * after that it keeps returning the last time it read.
+ */
+public final class CoarseClock extends Clock implements Closeable {
+
+	private final Ticker ticker;
+	private final ZoneId zone;
+
+	/** Creates a clock that reads the system time every millisecond. */
+	public CoarseClock() {
+		this(1);
+	}
+
+	/** Creates a clock that reads the system time at the specified interval.
+	 * @param resolution The interval between reads, in milliseconds. */
+	public CoarseClock(long resolution) {
+		if (resolution < 1) {
+			throw new IllegalArgumentException("Resolution must be at least 1 millisecond");
+		}
+		ticker = new Ticker(resolution);
+		zone = ZoneOffset.UTC;
+		ticker.start();
+	}
+
+	private CoarseClock(Ticker ticker, ZoneId zone) {
+		this.ticker = ticker;
+		this.zone = zone;
+	}
+
+	@Override
+	public long millis() {
+		return ticker.now;
+	}
+
+	@Override
+	public Instant instant() {
+		return Instant.ofEpochMilli(ticker.now);
+	}
+
+	@Override
+	public ZoneId getZone() {
+		return zone;
+	}
+
+	/** Returns a clock in the specified zone that shares the thread of this one. */
+	@Override
+	public Clock withZone(ZoneId value) {
+		return value.equals(zone) ? this : new CoarseClock(ticker, value);
+	}
+
+	/** Stops the thread that updates this clock and the ones created with withZone(). */
+	@Override
+	public void close() {
+		ticker.interrupt();
+	}
+
+	/** The thread that reads the system time. */
+	private static final class Ticker extends Thread {
+		private final long resolution;
+		private volatile long now = System.currentTimeMillis();
+
+		private Ticker(long resolution) {
+			super("j8583-clock");
+			this.resolution = resolution;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!isInterrupted()) {
+					now = System.currentTimeMillis();
+					Thread.sleep(resolution);
+				}
+			} catch (InterruptedException ex) {
+				//Closed
+			}
+		}
+	}
+
+}
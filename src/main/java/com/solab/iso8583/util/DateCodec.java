@@ -0,0 +1,154 @@
+/*
+ * j8583 A Java implementation of the ISO8583 protocol
+ * Copyright (C) 2007 Enrique Zamudio Lopez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.solab.iso8583.util;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Utility class to convert between instants and wall-clock date fields in a timezone,
+ * using epoch day arithmetic and the java.time rules of the timezone, which are looked up
+ * once and cached, instead of creating a Calendar every time. The conversions give the same
+ * results as a lenient GregorianCalendar: fields out of range roll over into the next ones,
+ * local times in a gap are moved forward by the length of the gap, and local times that
+ * happen twice use the later offset. Wall-clock times outside 1901 to 2037 are left to
+ * GregorianCalendar, because the JDK's timezones don't use the same rules as java.time
+ * outside those years (local mean time before 1900, and rules that change every year
+ * after 2037), and dates before 1583 may be in the Julian calendar.
+ */
+public final class DateCodec {
+
+	public static final long MILLIS_PER_DAY = 86400000L;
+	/** The epoch day of 1583-01-01, the first full year of the Gregorian calendar. */
+	private static final long GREGORIAN_START = epochDay(1583, 1, 1);
+	/** The epoch days of 1901-01-01 and 2038-01-01, the range in which the java.time rules
+	 * of a timezone give the same offsets as the JDK's TimeZone. */
+	private static final long RULES_START = epochDay(1901, 1, 1);
+	private static final long RULES_END = epochDay(2038, 1, 1);
+	/** The class of the timezones that come from the JDK's database. */
+	private static final Class<?> ZONE_INFO = TimeZone.getTimeZone("GMT").getClass();
+	private static final ConcurrentHashMap<String, ZoneRules> RULES = new ConcurrentHashMap<>();
+
+	private DateCodec(){}
+
+	/** Returns the java.time rules for the timezone, or null if it's not one of the JDK's
+	 * timezones, for example a SimpleTimeZone with custom rules. */
+	public static ZoneRules getRules(final TimeZone tz) {
+		if (tz.getClass() != ZONE_INFO) {
+			return null;
+		}
+		final ZoneRules rules = RULES.get(tz.getID());
+		if (rules != null) {
+			return rules;
+		}
+		try {
+			final ZoneRules r = tz.toZoneId().getRules();
+			RULES.putIfAbsent(tz.getID(), r);
+			return r;
+		} catch (RuntimeException ex) {
+			return null;
+		}
+	}
+
+	/** Returns the number of days from 1970-01-01 to the specified date of the proleptic
+	 * Gregorian calendar. The month and day can be out of range; they roll over the same way
+	 * as in a lenient calendar, so month 13 is January of the next year and day 0 is the last
+	 * day of the previous month. */
+	public static long epochDay(final int year, final int month, final int day) {
+		final int m = Math.floorMod(month - 1, 12) + 1;
+		final long y = year + Math.floorDiv(month - 1, 12) - (m <= 2 ? 1 : 0);
+		final long era = Math.floorDiv(y, 400);
+		final long yoe = y - era * 400;
+		final long doy = (153 * (m > 2 ? m - 3 : m + 9) + 2) / 5;
+		return era * 146097 + yoe * 365 + yoe / 4 - yoe / 100 + doy - 719468 + day - 1;
+	}
+
+	/** Returns the date of the specified epoch day as a number in the form yyyyMMdd. */
+	public static long toYmd(final long epochDay) {
+		final long z = epochDay + 719468;
+		final long era = Math.floorDiv(z, 146097);
+		final long doe = z - era * 146097;
+		final long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		final long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		final long mp = (5 * doy + 2) / 153;
+		final long d = doy - (153 * mp + 2) / 5 + 1;
+		final long m = mp < 10 ? mp + 3 : mp - 9;
+		final long y = yoe + era * 400 + (m <= 2 ? 1 : 0);
+		return y * 10000 + m * 100 + d;
+	}
+
+	/** Returns the number of days in the month of the specified year. */
+	public static int lengthOfMonth(final int year, final int month) {
+		return (int)(epochDay(year, month + 1, 1) - epochDay(year, month, 1));
+	}
+
+	/** Returns the wall-clock time of the instant in the timezone, as milliseconds from
+	 * 1970-01-01 00:00 in that timezone.
+	 * @param tz The timezone, or null for the JVM's default timezone. */
+	public static long toLocalMillis(final TimeZone tz, final long millis) {
+		return millis + (tz == null ? TimeZone.getDefault() : tz).getOffset(millis);
+	}
+
+	/** Returns the instant of the specified wall-clock time in the timezone. The fields can
+	 * be out of range and roll over, as in a lenient calendar.
+	 * @param tz The timezone, or null for the JVM's default timezone.
+	 * @param month The month, 1 to 12. */
+	public static long toEpochMillis(final TimeZone tz, final int year, final int month, final int day,
+									 final int hour, final int minute, final int second, final int millis) {
+		final TimeZone zone = tz == null ? TimeZone.getDefault() : tz;
+		final long local = epochDay(year, month, day) * MILLIS_PER_DAY
+				+ ((hour * 60L + minute) * 60L + second) * 1000L + millis;
+		final ZoneRules rules = getRules(zone);
+		final long localDay = Math.floorDiv(local, MILLIS_PER_DAY);
+		if (rules == null || localDay < RULES_START || localDay >= RULES_END) {
+			final Calendar cal = new GregorianCalendar(zone);
+			cal.clear();
+			cal.set(year, month - 1, day, hour, minute, second);
+			cal.set(Calendar.MILLISECOND, millis);
+			return cal.getTimeInMillis();
+		}
+		return local - offsetSeconds(rules, local) * 1000L;
+	}
+
+	/** Returns the offset of the timezone at the specified wall-clock time. */
+	private static int offsetSeconds(final ZoneRules rules, final long local) {
+		if (rules.isFixedOffset()) {
+			return rules.getOffset(Instant.EPOCH).getTotalSeconds();
+		}
+		final LocalDateTime ldt = LocalDateTime.ofEpochSecond(Math.floorDiv(local, 1000), 0, ZoneOffset.UTC);
+		final ZoneOffsetTransition t = rules.getTransition(ldt);
+		if (t == null) {
+			return rules.getOffset(ldt).getTotalSeconds();
+		}
+		return t.isGap() ? t.getOffsetBefore().getTotalSeconds() : t.getOffsetAfter().getTotalSeconds();
+	}
+
+	/** Returns true if the wall-clock time, in milliseconds from 1970-01-01, is in the
+	 * Gregorian calendar, so that toYmd() gives the same date as a GregorianCalendar. */
+	public static boolean isGregorian(final long localMillis) {
+		return Math.floorDiv(localMillis, MILLIS_PER_DAY) >= GREGORIAN_START;
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * j8583 A Java implementation of the ISO8583 protocol
+ * Copyright (C) 2007 Enrique Zamudio Lopez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.solab.iso8583.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** Utility class to write numbers as fixed-length, zero-padded ASCII or BCD digits,
+ * straight from a long and without creating any strings.
+ */
+public final class Digits {
+
+    private static final long[] POW10 = new long[19];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private Digits(){}
+
+    /** Returns true if the value is not negative and can be written with the specified
+     * number of digits. */
+    public static boolean fits(long value, int digits) {
+        return value >= 0 && (digits >= POW10.length || value < POW10[digits]);
+    }
+
+    /** Returns the digit of the value at the specified position, counting from the right. */
+    private static int digit(long value, int pos) {
+        return pos >= POW10.length ? 0 : (int)((value / POW10[pos]) % 10);
+    }
+
+    /** Writes the value as ASCII digits, zero-padded to the left. The value must fit
+     * in the number of digits. */
+    public static void writeAscii(long value, int digits, OutputStream outs) throws IOException {
+        for (int i = digits - 1; i >= 0; i--) {
+            outs.write(digit(value, i) + 48);
+        }
+    }
+
+    /** Writes the value as BCD, zero-padded to the left, in (digits + 1) / 2 bytes;
+     * for an odd number of digits, the first byte contains just one digit, the same way
+     * Bcd.encode does. The value must fit in the number of digits. */
+    public static void writeBcd(long value, int digits, OutputStream outs) throws IOException {
+        for (int i = ((digits + 1) / 2) * 2 - 1; i > 0; i -= 2) {
+            outs.write((digit(value, i) << 4) | digit(value, i - 1));
+        }
+    }
+
+    /** Returns the value as a string of ASCII digits, zero-padded to the left. The value
+     * must fit in the number of digits. */
+    public static String format(long value, int digits) {
+        final char[] c = new char[digits];
+        for (int i = 0; i < digits; i++) {
+            c[i] = (char)(digit(value, digits - 1 - i) + 48);
+        }
+        return new String(c);
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * j8583 A Java implementation of the ISO8583 protocol
+ * Copyright (C) 2007 Enrique Zamudio Lopez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.solab.iso8583.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/** A bounded pool of direct ByteBuffers, grouped in size classes that are powers of two,
+ * so that messages can be encoded straight into memory that a channel can write without
+ * copying it first. Buffers must be given back with release() once they've been written,
+ * and must not be used after that. Requests bigger than the largest class get a new buffer
+ * which is not kept when released. It can be shared by several threads.
+ */
+public final class DirectBufferPool {
+
+    private final int minSize;
+    private final List<ArrayBlockingQueue<ByteBuffer>> classes;
+
+    /** Creates a pool with buffers from 256 bytes to 64KB, keeping up to 64 of each size. */
+    public DirectBufferPool() {
+        this(256, 65536, 64);
+    }
+
+    /** Creates a pool with the specified sizes.
+     * @param minSize The size of the smallest buffers; it's rounded up to a power of two.
+     * @param maxSize The size of the biggest buffers that are kept.
+     * @param buffersPerClass The maximum number of buffers of each size that are kept. */
+    public DirectBufferPool(int minSize, int maxSize, int buffersPerClass) {
+        if (minSize < 1 || maxSize < minSize || buffersPerClass < 1) {
+            throw new IllegalArgumentException("Invalid pool sizes");
+        }
+        int size = Integer.highestOneBit(minSize);
+        if (size < minSize) {
+            size <<= 1;
+        }
+        this.minSize = size;
+        int count = 1;
+        while (count < 31 && ((long)size << count) <= maxSize) {
+            count++;
+        }
+        classes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            classes.add(new ArrayBlockingQueue<>(buffersPerClass));
+        }
+    }
+
+    /** Returns the index of the smallest class that can hold the size, or -1 if it's too big. */
+    private int sizeClass(int size) {
+        for (int i = 0; i < classes.size(); i++) {
+            if (minSize << i >= size) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns a cleared direct buffer with at least the specified capacity. */
+    public ByteBuffer acquire(int size) {
+        final int c = sizeClass(size);
+        if (c < 0) {
+            return ByteBuffer.allocateDirect(size);
+        }
+        ByteBuffer buf = classes.get(c).poll();
+        if (buf == null) {
+            buf = ByteBuffer.allocateDirect(minSize << c);
+        }
+        buf.clear();
+        return buf;
+    }
+
+    /** Gives the buffer back to the pool, unless its class is already full or it doesn't
+     * belong to any class. */
+    public void release(ByteBuffer buf) {
+        if (buf == null || !buf.isDirect()) {
+            return;
+        }
+        final int c = sizeClass(buf.capacity());
+        if (c >= 0 && minSize << c == buf.capacity()) {
+            classes.get(c).offer(buf);
+        }
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * j8583 A Java implementation of the ISO8583 protocol
+ * Copyright (C) 2007 Enrique Zamudio Lopez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.solab.iso8583.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/** A growable byte buffer to encode messages into, which can be reused to avoid allocating
+ * and growing a new ByteArrayOutputStream for every message. Unlike ByteArrayOutputStream,
+ * it's not synchronized, so an instance must only be used by one thread at a time; it can be
+ * kept per connection, or borrowed from the current thread with acquire() and release().
+ */
+public final class EncodeBuffer extends OutputStream {
+
+    /** Buffers that grow beyond this size are not kept by the threads after they're released. */
+    public static final int MAX_RETAINED = 1 << 16;
+
+    /** How many buffers each thread keeps for nested writes, including its own. */
+    public static final int MAX_NESTED = 4;
+
+    private static final ThreadLocal<EncodeBuffer> LOCAL = new ThreadLocal<EncodeBuffer>() {
+        @Override
+        protected EncodeBuffer initialValue() {
+            return new EncodeBuffer(1024);
+        }
+    };
+
+    private byte[] buf;
+    private int count;
+    private boolean inUse;
+    /** The thread's buffer for writes nested inside the ones that use this buffer. */
+    private EncodeBuffer nested;
+
+    /** Creates a buffer with an initial capacity of 256 bytes. */
+    public EncodeBuffer() {
+        this(256);
+    }
+
+    public EncodeBuffer(int capacity) {
+        buf = new byte[capacity];
+    }
+
+    /** Returns an empty buffer from the current thread. Writes that happen while another one is
+     * in use (for example a composite field encoded inside a message) get the next buffer of
+     * the thread's stack, so they're reused too; only writes nested deeper than MAX_NESTED
+     * levels get a new buffer. It must be given back with release() when it's no longer needed. */
+    public static EncodeBuffer acquire() {
+        EncodeBuffer prev = null;
+        EncodeBuffer b = LOCAL.get();
+        int depth = 0;
+        while (b != null && b.inUse) {
+            if (++depth == MAX_NESTED) {
+                return new EncodeBuffer();
+            }
+            prev = b;
+            b = b.nested;
+        }
+        if (b == null || b.buf.length > MAX_RETAINED) {
+            final EncodeBuffer nb = new EncodeBuffer(prev == null ? 1024 : 256);
+            if (b != null) {
+                nb.nested = b.nested;
+            }
+            if (prev == null) {
+                LOCAL.set(nb);
+            } else {
+                prev.nested = nb;
+            }
+            b = nb;
+        }
+        b.inUse = true;
+        b.count = 0;
+        return b;
+    }
+
+    /** Gives the buffer back to its thread, if it was obtained with acquire(). The contents
+     * must not be used after this; copy them out first if they're needed. */
+    public void release() {
+        inUse = false;
+    }
+
+    /** Makes sure the buffer can hold the specified number of bytes without growing. */
+    public void ensureCapacity(int capacity) {
+        if (capacity > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(capacity, buf.length * 2));
+        }
+    }
+
+    @Override
+    public void write(int b) {
+        if (count == buf.length) {
+            ensureCapacity(count + 1);
+        }
+        buf[count++] = (byte)b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    /** Replaces a byte that was already written. */
+    public void set(int pos, int b) {
+        if (pos < 0 || pos >= count) {
+            throw new IndexOutOfBoundsException("Invalid position " + pos);
+        }
+        buf[pos] = (byte)b;
+    }
+
+    /** Discards everything that was written. */
+    public void reset() {
+        count = 0;
+    }
+
+    /** Discards what was written after the specified size. */
+    public void truncate(int size) {
+        if (size < 0 || size > count) {
+            throw new IndexOutOfBoundsException("Invalid size " + size);
+        }
+        count = size;
+    }
+
+    /** Returns the number of bytes written. */
+    public int size() {
+        return count;
+    }
+
+    /** Returns the internal array, which contains size() valid bytes. It's only valid until
+     * the next write, since the array is replaced when the buffer grows. */
+    public byte[] getBuffer() {
+        return buf;
+    }
+
+    /** Returns a copy of the bytes written. */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    /** Returns a ByteBuffer over the bytes written, without copying them. */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(buf, 0, count);
+    }
+
+    /** Writes the contents of the buffer to the stream, in a single write. */
+    public void writeTo(OutputStream outs) throws IOException {
+        outs.write(buf, 0, count);
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * j8583 A Java implementation of the ISO8583 protocol
+ * Copyright (C) 2007 Enrique Zamudio Lopez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.solab.iso8583.util;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Utility class to compute how many bytes a string takes in a character encoding,
+ * without encoding it, for the common cases of single-byte encodings and UTF-8.
+ * Other encodings fall back to encoding the string. It also tells if an encoding
+ * writes ASCII characters as their own byte values, so they can be written directly.
+ */
+public final class EncodedLength {
+
+    private static final ConcurrentHashMap<String, Charset> CHARSETS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Charset, Boolean> SINGLE_BYTE = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Charset, Boolean> ASCII = new ConcurrentHashMap<>();
+
+    private EncodedLength(){}
+
+    /** Returns the charset with the specified name, or the default charset if it's null. */
+    public static Charset charset(String encoding) {
+        if (encoding == null) {
+            return Charset.defaultCharset();
+        }
+        Charset cs = CHARSETS.get(encoding);
+        if (cs == null) {
+            cs = Charset.forName(encoding);
+            CHARSETS.putIfAbsent(encoding, cs);
+        }
+        return cs;
+    }
+
+    /** Returns the number of bytes that s.getBytes(encoding) would return. */
+    public static int of(CharSequence s, String encoding) {
+        final Charset cs = charset(encoding);
+        if (isSingleByte(cs)) {
+            //surrogate pairs are replaced with a single byte
+            return Character.codePointCount(s, 0, s.length());
+        } else if (StandardCharsets.UTF_8.equals(cs)) {
+            return utf8(s);
+        }
+        return s.toString().getBytes(cs).length;
+    }
+
+    /** Returns the number of bytes taken by the specified number of ASCII digits or letters. */
+    public static int ascii(int chars, String encoding) {
+        final Charset cs = charset(encoding);
+        if (isSingleByte(cs) || StandardCharsets.UTF_8.equals(cs)) {
+            return chars;
+        }
+        final char[] buf = new char[chars];
+        Arrays.fill(buf, '0');
+        return new String(buf).getBytes(cs).length;
+    }
+
+    /** Returns true if the encoding writes every ASCII character (0 to 127) as a single byte
+     * with the same value, as UTF-8 and the ISO-8859 encodings do. */
+    public static boolean isAsciiCompatible(String encoding) {
+        final Charset cs = charset(encoding);
+        Boolean compatible = ASCII.get(cs);
+        if (compatible == null) {
+            final byte[] ascii = new byte[128];
+            for (int i = 0; i < ascii.length; i++) {
+                ascii[i] = (byte)i;
+            }
+            compatible = cs.canEncode()
+                    && Arrays.equals(ascii, new String(ascii, StandardCharsets.US_ASCII).getBytes(cs));
+            ASCII.putIfAbsent(cs, compatible);
+        }
+        return compatible;
+    }
+
+    /** Returns true if the encoding writes every character it can encode as a single byte,
+     * as the ISO-8859 and EBCDIC encodings do. */
+    public static boolean isSingleByte(String encoding) {
+        return isSingleByte(charset(encoding));
+    }
+
+    private static boolean isSingleByte(Charset cs) {
+        Boolean single = SINGLE_BYTE.get(cs);
+        if (single == null) {
+            single = cs.canEncode() && cs.newEncoder().maxBytesPerChar() == 1f;
+            SINGLE_BYTE.putIfAbsent(cs, single);
+        }
+        return single;
+    }
+
+    private static int utf8(CharSequence s) {
+        final int len = s.length();
+        int size = 0;
+        for (int i = 0; i < len; i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80) {
+                size++;
+            } else if (c < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                size += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                //unpaired surrogates are replaced with '?'
+                size++;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+
+}
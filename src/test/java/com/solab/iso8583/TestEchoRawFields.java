@@ -0,0 +1,56 @@
+package com.solab.iso8583;
+
+import com.solab.iso8583.parse.FieldParseInfo;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Tests that responses with echoed fields keep the bytes of their own request
+ * when the next frames are read by the same reader.
+ */
+public class TestEchoRawFields {
+
+    private MessageFactory<IsoMessage> mf;
+
+    @Before
+    public void init() {
+        mf = new MessageFactory<>();
+        mf.setCharacterEncoding("UTF-8");
+        mf.setEchoRawFields(true);
+        Map<Integer, FieldParseInfo> guide = new HashMap<>();
+        guide.put(11, FieldParseInfo.getInstance(IsoType.NUMERIC, 6, "UTF-8"));
+        guide.put(41, FieldParseInfo.getInstance(IsoType.ALPHA, 8, "UTF-8"));
+        mf.setParseMap(0x200, guide);
+    }
+
+    private byte[] frames(String... terminals) throws Exception {
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        for (int i = 0; i < terminals.length; i++) {
+            final IsoMessage m = mf.newMessage(0x200);
+            m.setValue(11, String.format("%d%d%d%d%d%d", i + 1, i + 1, i + 1, i + 1, i + 1, i + 1),
+                    IsoType.NUMERIC, 6);
+            m.setValue(41, terminals[i], IsoType.ALPHA, 8);
+            m.write(bout, 2);
+        }
+        return bout.toByteArray();
+    }
+
+    @Test
+    public void testReaderKeepsEchoedFields() throws Exception {
+        final IsoMessageReader<IsoMessage> reader = new IsoMessageReader<>(mf, 2);
+        final ByteArrayInputStream in = new ByteArrayInputStream(frames("TERM0001", "TERM0002"));
+        final IsoMessage req1 = reader.read(in);
+        final IsoMessage resp1 = mf.createResponse(req1);
+        final IsoMessage req2 = reader.read(in);
+        Assert.assertEquals("TERM0002", req2.getObjectValue(41));
+        final String data = new String(resp1.writeData(), "UTF-8");
+        Assert.assertTrue(data, data.startsWith("0210"));
+        Assert.assertTrue(data, data.endsWith("111111TERM0001"));
+    }
+
+}
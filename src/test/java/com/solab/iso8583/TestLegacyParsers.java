@@ -0,0 +1,64 @@
+package com.solab.iso8583;
+
+import com.solab.iso8583.parse.AlphaParseInfo;
+import com.solab.iso8583.parse.FieldParseInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** Tests that parsers which only implement the methods without a limit, as they had to
+ * before those methods existed, are still used by the factory, and that subclasses of the
+ * built-in parsers are used through the methods with a limit.
+ */
+public class TestLegacyParsers {
+
+    /** Parses an LLVAR the old way, with the 4 and 5 argument methods. */
+    public static class OldLlvar extends FieldParseInfo {
+        public OldLlvar() {
+            super(IsoType.LLVAR, 0);
+        }
+        @Override
+        public <T> IsoValue<?> parse(int field, byte[] buf, int pos, CustomField<T> custom) {
+            return parse(field, buf, pos, custom, false);
+        }
+        @Override
+        public <T> IsoValue<?> parse(int field, byte[] buf, int pos, CustomField<T> custom, boolean binaryLength) {
+            final int len = (buf[pos] - '0') * 10 + buf[pos + 1] - '0';
+            return new IsoValue<>(IsoType.LLVAR, "old:" + new String(buf, pos + 2, len), null);
+        }
+        @Override
+        public <T> IsoValue<?> parseBinary(int field, byte[] buf, int pos, CustomField<T> custom) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /** Overrides the method with a limit in a subclass of a built-in parser. */
+    public static class CustomAlpha extends AlphaParseInfo {
+        public CustomAlpha() {
+            super(8);
+        }
+        @Override
+        public <T> IsoValue<?> parse(int field, byte[] buf, int pos, int limit, CustomField<T> custom) {
+            return new IsoValue<>(IsoType.ALPHA, "x", 8, null);
+        }
+    }
+
+    @Test
+    public void testOldParsersAreCalled() throws Exception {
+        final MessageFactory<IsoMessage> mf = new MessageFactory<>();
+        mf.setCharacterEncoding("UTF-8");
+        final Map<Integer, FieldParseInfo> guide = new HashMap<>();
+        guide.put(32, new OldLlvar());
+        guide.put(41, new CustomAlpha());
+        mf.setParseMap(0x200, guide);
+        final IsoMessage m = mf.newMessage(0x200);
+        m.setValue(32, "123456", IsoType.LLVAR, 0);
+        m.setValue(41, "TERM0001", IsoType.ALPHA, 8);
+        final IsoMessage p = mf.parseMessage(m.writeData(), 0);
+        Assert.assertEquals("old:123456", p.getObjectValue(32));
+        Assert.assertEquals("x", p.getObjectValue(41));
+    }
+
+}